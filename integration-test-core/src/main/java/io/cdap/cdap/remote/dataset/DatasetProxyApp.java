@@ -0,0 +1,111 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset;
+
+import io.cdap.cdap.api.app.AbstractApplication;
+import io.cdap.cdap.api.data.DatasetInstantiationException;
+import io.cdap.cdap.api.dataset.lib.KeyValueTable;
+import io.cdap.cdap.api.dataset.lib.cube.Cube;
+import io.cdap.cdap.api.dataset.table.Table;
+import io.cdap.cdap.api.service.AbstractService;
+import io.cdap.cdap.api.service.http.AbstractHttpServiceHandler;
+import io.cdap.cdap.api.service.http.HttpServiceRequest;
+import io.cdap.cdap.api.service.http.HttpServiceResponder;
+import io.cdap.cdap.remote.dataset.cube.CubeHttpHandler;
+import io.cdap.cdap.remote.dataset.kvtable.KVTableHttpHandler;
+import io.cdap.cdap.remote.dataset.table.TableHttpHandler;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+
+/**
+ * Application with a single Service which serves any {@link Table}, {@link KeyValueTable} or {@link Cube}, selected
+ * by the namespace and dataset name in the request path. One deployment of this application serves all datasets,
+ * so only one service container needs to be started.
+ *
+ * Endpoints are of the form {@code <type>/namespaces/<namespace>/datasets/<dataset>/<method>}, where type is one of
+ * {@link #TABLE_PATH}, {@link #KV_TABLE_PATH} or {@link #CUBE_PATH}. A {@code GET} on
+ * {@code namespaces/<namespace>/datasets/<dataset>/ping} returns 200 if the service is up and the dataset exists.
+ */
+public class DatasetProxyApp extends AbstractApplication {
+
+  public static final String NAME = "DatasetProxy";
+  public static final String SERVICE_NAME = "DatasetProxyService";
+
+  public static final String TABLE_PATH = "table";
+  public static final String KV_TABLE_PATH = "kvtable";
+  public static final String CUBE_PATH = "cube";
+
+  @Override
+  public void configure() {
+    setName(NAME);
+    setDescription("Serves Table, KeyValueTable and Cube datasets of any namespace");
+    addService(new DatasetProxyService());
+  }
+
+  /**
+   * Returns the path, relative to the proxy service's base URL, under which a dataset is served.
+   *
+   * @param typePath one of {@link #TABLE_PATH}, {@link #KV_TABLE_PATH} or {@link #CUBE_PATH}
+   * @param namespace the namespace of the dataset
+   * @param dataset the name of the dataset
+   */
+  public static String getDatasetPath(String typePath, String namespace, String dataset) {
+    return String.format("%s/namespaces/%s/datasets/%s/", typePath, namespace, dataset);
+  }
+
+  /**
+   * Returns the path, relative to the proxy service's base URL, which checks that a dataset can be served.
+   */
+  public static String getPingPath(String namespace, String dataset) {
+    return String.format("namespaces/%s/datasets/%s/ping", namespace, dataset);
+  }
+
+  /**
+   * Service which proxies requests to the datasets.
+   */
+  public static class DatasetProxyService extends AbstractService {
+
+    @Override
+    protected void configure() {
+      setName(SERVICE_NAME);
+      addHandler(new TableHttpHandler());
+      addHandler(new KVTableHttpHandler());
+      addHandler(new CubeHttpHandler());
+      addHandler(new PingHandler());
+    }
+  }
+
+  /**
+   * HttpHandler which lets clients cheaply check whether a dataset can still be served.
+   */
+  public static class PingHandler extends AbstractHttpServiceHandler {
+
+    @Path("namespaces/{namespace}/datasets/{dataset}/ping")
+    @GET
+    public void ping(HttpServiceRequest request, HttpServiceResponder responder,
+                     @PathParam("namespace") String namespace, @PathParam("dataset") String dataset) {
+      try {
+        getContext().getDataset(namespace, dataset);
+        responder.sendStatus(200);
+      } catch (DatasetInstantiationException e) {
+        responder.sendError(404, e.getMessage());
+      }
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.cube;
+
+import com.google.gson.Gson;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.lib.cube.AbstractCubeHttpHandler;
+import io.cdap.cdap.api.dataset.lib.cube.Cube;
+import io.cdap.cdap.api.dataset.lib.cube.CubeExploreQuery;
+import io.cdap.cdap.api.dataset.lib.cube.CubeFact;
+import io.cdap.cdap.api.dataset.lib.cube.CubeQuery;
+import io.cdap.cdap.api.dataset.lib.cube.DimensionValue;
+import io.cdap.cdap.api.dataset.lib.cube.TimeSeries;
+import io.cdap.cdap.api.service.http.AbstractHttpServiceHandler;
+import io.cdap.cdap.api.service.http.HttpServiceRequest;
+import io.cdap.cdap.api.service.http.HttpServiceResponder;
+import io.cdap.cdap.internal.guava.reflect.TypeToken;
+import io.cdap.cdap.remote.dataset.DatasetProxyApp;
+
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.List;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+
+/**
+ * HttpHandler to make API calls on any {@link Cube}, identified by namespace and name in the request path.
+ * It serves the same methods as CDAP's {@link AbstractCubeHttpHandler}, which can only serve a fixed dataset,
+ * so it can back a {@link RemoteCube}.
+ */
+public class CubeHttpHandler extends AbstractHttpServiceHandler {
+  private static final Gson GSON = new Gson();
+  private static final Type CUBE_FACT_COLLECTION = new TypeToken<List<CubeFact>>() { }.getType();
+  private static final String PREFIX = DatasetProxyApp.CUBE_PATH + "/namespaces/{namespace}/datasets/{dataset}/";
+
+  @Path(PREFIX + "add")
+  @POST
+  public void add(HttpServiceRequest request, HttpServiceResponder responder,
+                  @PathParam("namespace") String namespace, @PathParam("dataset") String dataset) {
+    Collection<CubeFact> facts = GSON.fromJson(Bytes.toString(request.getContent()), CUBE_FACT_COLLECTION);
+    getCube(namespace, dataset).add(facts);
+    responder.sendStatus(200);
+  }
+
+  @Path(PREFIX + "searchDimensionValue")
+  @POST
+  public void searchDimensionValue(HttpServiceRequest request, HttpServiceResponder responder,
+                                   @PathParam("namespace") String namespace,
+                                   @PathParam("dataset") String dataset) {
+    CubeExploreQuery query = GSON.fromJson(Bytes.toString(request.getContent()), CubeExploreQuery.class);
+    Collection<DimensionValue> result = getCube(namespace, dataset).findDimensionValues(query);
+    responder.sendJson(result);
+  }
+
+  @Path(PREFIX + "searchMeasure")
+  @POST
+  public void searchMeasure(HttpServiceRequest request, HttpServiceResponder responder,
+                            @PathParam("namespace") String namespace, @PathParam("dataset") String dataset) {
+    CubeExploreQuery query = GSON.fromJson(Bytes.toString(request.getContent()), CubeExploreQuery.class);
+    Collection<String> result = getCube(namespace, dataset).findMeasureNames(query);
+    responder.sendJson(result);
+  }
+
+  @Path(PREFIX + "query")
+  @POST
+  public void query(HttpServiceRequest request, HttpServiceResponder responder,
+                    @PathParam("namespace") String namespace, @PathParam("dataset") String dataset) {
+    CubeQuery query = GSON.fromJson(Bytes.toString(request.getContent()), CubeQuery.class);
+    Collection<TimeSeries> result = getCube(namespace, dataset).query(query);
+    responder.sendJson(result);
+  }
+
+  private Cube getCube(String namespace, String dataset) {
+    return getContext().getDataset(namespace, dataset);
+  }
+}
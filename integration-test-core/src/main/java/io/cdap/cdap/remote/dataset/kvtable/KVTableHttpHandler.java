@@ -0,0 +1,106 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.kvtable;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.lib.KeyValueTable;
+import io.cdap.cdap.api.service.http.AbstractHttpServiceHandler;
+import io.cdap.cdap.api.service.http.HttpServiceRequest;
+import io.cdap.cdap.api.service.http.HttpServiceResponder;
+import io.cdap.cdap.remote.dataset.DatasetProxyApp;
+
+import java.util.Map;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+
+/**
+ * HttpHandler to make API calls on any {@link KeyValueTable}, identified by namespace and name in the request path.
+ * It backs {@link RemoteKeyValueTable}.
+ */
+public class KVTableHttpHandler extends AbstractHttpServiceHandler {
+  private static final Gson GSON = new GsonBuilder().enableComplexMapKeySerialization().create();
+  private static final String PREFIX = DatasetProxyApp.KV_TABLE_PATH + "/namespaces/{namespace}/datasets/{dataset}/";
+
+  @Path(PREFIX + "read")
+  @POST
+  public void read(HttpServiceRequest request, HttpServiceResponder responder,
+                   @PathParam("namespace") String namespace, @PathParam("dataset") String dataset) throws Exception {
+    byte[] key = deser(request, byte[].class);
+    byte[] read = getKVTable(namespace, dataset).read(key);
+    responder.sendJson(new Result(read));
+  }
+
+  @Path(PREFIX + "readAll")
+  @POST
+  public void readAll(HttpServiceRequest request, HttpServiceResponder responder,
+                      @PathParam("namespace") String namespace, @PathParam("dataset") String dataset) throws Exception {
+    byte[][] keys = deser(request, byte[][].class);
+    Map<byte[], byte[]> values = getKVTable(namespace, dataset).readAll(keys);
+    responder.sendJson(200, values, values.getClass(), GSON);
+  }
+
+  @Path(PREFIX + "incrementAndGet")
+  @POST
+  public void incrementAndGet(HttpServiceRequest request, HttpServiceResponder responder,
+                              @PathParam("namespace") String namespace,
+                              @PathParam("dataset") String dataset) throws Exception {
+    IncrementRequest increment = deser(request, IncrementRequest.class);
+    long value = getKVTable(namespace, dataset).incrementAndGet(increment.getKey(), increment.getAmount());
+    responder.sendJson(value);
+  }
+
+  @Path(PREFIX + "write")
+  @POST
+  public void write(HttpServiceRequest request, HttpServiceResponder responder,
+                    @PathParam("namespace") String namespace, @PathParam("dataset") String dataset) throws Exception {
+    WriteRequest write = deser(request, WriteRequest.class);
+    getKVTable(namespace, dataset).write(write.getKey(), write.getValue());
+    responder.sendStatus(200);
+  }
+
+  @Path(PREFIX + "delete")
+  @POST
+  public void delete(HttpServiceRequest request, HttpServiceResponder responder,
+                     @PathParam("namespace") String namespace, @PathParam("dataset") String dataset) throws Exception {
+    byte[] key = deser(request, byte[].class);
+    getKVTable(namespace, dataset).delete(key);
+    responder.sendStatus(200);
+  }
+
+  @Path(PREFIX + "compareAndSwap")
+  @POST
+  public void compareAndSwap(HttpServiceRequest request, HttpServiceResponder responder,
+                             @PathParam("namespace") String namespace,
+                             @PathParam("dataset") String dataset) throws Exception {
+    CompareAndSwapRequest compareAndSwapRequest = deser(request, CompareAndSwapRequest.class);
+    boolean succeeded = getKVTable(namespace, dataset).compareAndSwap(compareAndSwapRequest.getRow(),
+                                                                      compareAndSwapRequest.getOldValue(),
+                                                                      compareAndSwapRequest.getNewValue());
+    responder.sendJson(succeeded);
+  }
+
+  private KeyValueTable getKVTable(String namespace, String dataset) {
+    return getContext().getDataset(namespace, dataset);
+  }
+
+  private <T> T deser(HttpServiceRequest request, Class<T> clz) {
+    return GSON.fromJson(Bytes.toString(request.getContent()), clz);
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.table;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.table.Delete;
+import io.cdap.cdap.api.dataset.table.Get;
+import io.cdap.cdap.api.dataset.table.Increment;
+import io.cdap.cdap.api.dataset.table.Put;
+import io.cdap.cdap.api.dataset.table.Row;
+import io.cdap.cdap.api.dataset.table.Table;
+import io.cdap.cdap.api.service.http.AbstractHttpServiceHandler;
+import io.cdap.cdap.api.service.http.HttpServiceRequest;
+import io.cdap.cdap.api.service.http.HttpServiceResponder;
+import io.cdap.cdap.remote.dataset.DatasetProxyApp;
+
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+
+/**
+ * HttpHandler to make API calls on any {@link Table}, identified by namespace and name in the request path.
+ * It backs {@link RemoteTable}.
+ */
+public class TableHttpHandler extends AbstractHttpServiceHandler {
+  private static final Gson GSON = new GsonBuilder().enableComplexMapKeySerialization().create();
+  private static final String PREFIX = DatasetProxyApp.TABLE_PATH + "/namespaces/{namespace}/datasets/{dataset}/";
+
+  @Path(PREFIX + "get")
+  @POST
+  public void get(HttpServiceRequest request, HttpServiceResponder responder,
+                  @PathParam("namespace") String namespace, @PathParam("dataset") String dataset) throws Exception {
+    Get get = deser(request, Get.class);
+    Row row = getTable(namespace, dataset).get(get);
+    responder.sendJson(200, row, row.getClass(), GSON);
+  }
+
+  @Path(PREFIX + "getWithRange")
+  @POST
+  public void getWithRange(HttpServiceRequest request, HttpServiceResponder responder,
+                           @PathParam("namespace") String namespace,
+                           @PathParam("dataset") String dataset) throws Exception {
+    GetRequest getRequest = deser(request, GetRequest.class);
+    Row row = getTable(namespace, dataset).get(getRequest.getRow(), getRequest.getStartColumn(),
+                                               getRequest.getStopColumn(), getRequest.getLimit());
+    responder.sendJson(200, row, row.getClass(), GSON);
+  }
+
+  @Path(PREFIX + "put")
+  @POST
+  public void put(HttpServiceRequest request, HttpServiceResponder responder,
+                  @PathParam("namespace") String namespace, @PathParam("dataset") String dataset) throws Exception {
+    Put put = deser(request, Put.class);
+    getTable(namespace, dataset).put(put);
+    responder.sendStatus(200);
+  }
+
+  @Path(PREFIX + "delete")
+  @POST
+  public void delete(HttpServiceRequest request, HttpServiceResponder responder,
+                     @PathParam("namespace") String namespace, @PathParam("dataset") String dataset) throws Exception {
+    Delete delete = deser(request, Delete.class);
+    getTable(namespace, dataset).delete(delete);
+    responder.sendStatus(200);
+  }
+
+  @Path(PREFIX + "incrementAndGet")
+  @POST
+  public void incrementAndGet(HttpServiceRequest request, HttpServiceResponder responder,
+                              @PathParam("namespace") String namespace,
+                              @PathParam("dataset") String dataset) throws Exception {
+    Increment increment = deser(request, Increment.class);
+    Row row = getTable(namespace, dataset).incrementAndGet(increment);
+    responder.sendJson(200, row, row.getClass(), GSON);
+  }
+
+  @Path(PREFIX + "compareAndSwap")
+  @POST
+  public void compareAndSwap(HttpServiceRequest request, HttpServiceResponder responder,
+                             @PathParam("namespace") String namespace,
+                             @PathParam("dataset") String dataset) throws Exception {
+    CompareAndSwapRequest compareAndSwap = deser(request, CompareAndSwapRequest.class);
+    Boolean succeeded = getTable(namespace, dataset).compareAndSwap(compareAndSwap.getRow(),
+                                                                    compareAndSwap.getColumn(),
+                                                                    compareAndSwap.getOldValue(),
+                                                                    compareAndSwap.getNewValue());
+    responder.sendJson(200, succeeded, succeeded.getClass(), GSON);
+  }
+
+  private Table getTable(String namespace, String dataset) {
+    return getContext().getDataset(namespace, dataset);
+  }
+
+  private <T> T deser(HttpServiceRequest request, Class<T> clz) {
+    return GSON.fromJson(Bytes.toString(request.getContent()), clz);
+  }
+}
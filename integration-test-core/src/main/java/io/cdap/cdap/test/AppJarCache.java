@@ -0,0 +1,391 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import io.cdap.cdap.api.app.Application;
+import io.cdap.cdap.common.test.AppJarHelper;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import javax.annotation.Nullable;
+
+/**
+ * Cache of application jars, so that the jar of an application class is only built once, rather than on every
+ * deployment. Jars are kept in memory for the JVM and on disk across JVMs, in the directory given by the
+ * {@code appJarCacheDir} system property, {@code app-jar-cache} in the temporary directory by default.
+ *
+ * A jar on disk is reused as long as none of the class path entries that its classes came from changed. Each jar is
+ * identified by a hash of its content, which is part of the artifact version, so that the server can tell whether
+ * it has that exact jar already.
+ *
+ * The cache directory may be shared by concurrent JVMs, and the workers of {@code AutoSuiteRunner} load this class
+ * on their own, so locking doesn't keep two builders of the same jar apart. Each entry is built in a directory of its
+ * own and then renamed into place, so that an entry is never changed once it can be seen.
+ */
+final class AppJarCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AppJarCache.class);
+  private static final Gson GSON = new Gson();
+  private static final Path CACHE_DIR =
+    Paths.get(System.getProperty("appJarCacheDir", new File(System.getProperty("java.io.tmpdir"), "app-jar-cache")
+      .getAbsolutePath()));
+  private static final String ENTRY_FILE = "entry.json";
+
+  // application class name and embedded jars -> jar
+  private static final ConcurrentMap<String, AppJar> JARS = new ConcurrentHashMap<>();
+  // class path entry -> fingerprint of its files, which don't change while the JVM runs
+  private static final ConcurrentMap<Path, String> FINGERPRINTS = new ConcurrentHashMap<>();
+
+  private AppJarCache() {
+  }
+
+  /**
+   * Returns the jar for the given application class, building it only if there is no up to date jar in the cache.
+   */
+  static AppJar get(Class<? extends Application> applicationClass, File... bundleEmbeddedJars) throws IOException {
+    String key = getKey(applicationClass, bundleEmbeddedJars);
+    AppJar jar = JARS.get(key);
+    if (jar != null) {
+      return jar;
+    }
+    synchronized (AppJarCache.class) {
+      jar = JARS.get(key);
+      if (jar == null) {
+        Path dir = CACHE_DIR.resolve(key);
+        jar = load(dir);
+        if (jar == null) {
+          jar = build(dir, applicationClass, bundleEmbeddedJars);
+        }
+        JARS.put(key, jar);
+      }
+      return jar;
+    }
+  }
+
+  // the class name keeps the cache readable, the hash distinguishes the embedded jars
+  private static String getKey(Class<?> applicationClass, File... bundleEmbeddedJars) {
+    if (bundleEmbeddedJars.length == 0) {
+      return applicationClass.getName();
+    }
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (File jar : bundleEmbeddedJars) {
+      hasher.putString(jar.getAbsolutePath(), StandardCharsets.UTF_8);
+    }
+    return applicationClass.getName() + "-" + hasher.hash().toString().substring(0, 16);
+  }
+
+  /**
+   * Loads the jar kept in the given directory, if the class path entries it was built from did not change since.
+   */
+  @Nullable
+  private static AppJar load(Path dir) throws IOException {
+    Path entryFile = dir.resolve(ENTRY_FILE);
+    if (!Files.exists(entryFile)) {
+      return null;
+    }
+    AppJar jar;
+    try (Reader reader = Files.newBufferedReader(entryFile, StandardCharsets.UTF_8)) {
+      jar = GSON.fromJson(reader, AppJar.class);
+    } catch (JsonParseException e) {
+      LOG.warn("Ignoring unreadable application jar cache entry {}", entryFile, e);
+      return null;
+    }
+    if (jar == null) {
+      return null;
+    }
+    jar.dir = dir;
+    return jar.getFile().exists() && jar.sourceFingerprint.equals(fingerprint(jar.sources)) ? jar : null;
+  }
+
+  private static AppJar build(Path dir, Class<? extends Application> applicationClass,
+                              File... bundleEmbeddedJars) throws IOException {
+    Files.createDirectories(CACHE_DIR);
+    Path stagingDir = Files.createTempDirectory(CACHE_DIR, dir.getFileName() + ".tmp");
+    Path tmpDir = Files.createTempDirectory("app-jar");
+    try {
+      Location location = AppJarHelper.createDeploymentJar(new LocalLocationFactory(tmpDir.toFile()),
+                                                           applicationClass, bundleEmbeddedJars);
+      List<String> sources = new ArrayList<>();
+      String contentHash;
+      try (InputStream input = location.getInputStream()) {
+        Path builtJar = tmpDir.resolve("app.jar");
+        Files.copy(input, builtJar, StandardCopyOption.REPLACE_EXISTING);
+        contentHash = hashContent(builtJar, applicationClass.getClassLoader(), sources);
+        for (File embedded : bundleEmbeddedJars) {
+          sources.add(embedded.getAbsolutePath());
+        }
+        Files.move(builtJar, stagingDir.resolve(getJarName(applicationClass.getSimpleName(), contentHash)));
+      }
+
+      AppJar jar = new AppJar(applicationClass.getSimpleName(), contentHash, sources, fingerprint(sources));
+      jar.dir = stagingDir;
+      jar.save();
+      AppJar installed = install(stagingDir, dir);
+      if (installed != null) {
+        LOG.debug("Using application jar {} for {} built concurrently", installed.getFile(),
+                  applicationClass.getName());
+        return installed;
+      }
+      jar.dir = dir;
+      LOG.debug("Built application jar {} for {}", jar.getFile(), applicationClass.getName());
+      return jar;
+    } finally {
+      deleteRecursively(tmpDir);
+      deleteRecursively(stagingDir);
+    }
+  }
+
+  /**
+   * Renames a newly built entry to the given directory of the cache.
+   *
+   * @return the up to date entry that another builder put there first, or {@code null} if the given entry was used
+   */
+  @Nullable
+  private static AppJar install(Path stagingDir, Path dir) throws IOException {
+    if (Files.exists(dir)) {
+      AppJar existing = load(dir);
+      if (existing != null) {
+        return existing;
+      }
+      // a directory can only be renamed to one that doesn't exist, so the outdated entry is renamed away first
+      Path outdatedDir = CACHE_DIR.resolve(dir.getFileName() + ".outdated-" + UUID.randomUUID());
+      try {
+        Files.move(dir, outdatedDir, StandardCopyOption.ATOMIC_MOVE);
+        deleteRecursively(outdatedDir);
+      } catch (NoSuchFileException e) {
+        // another builder renamed it away already
+      }
+    }
+    try {
+      Files.move(stagingDir, dir, StandardCopyOption.ATOMIC_MOVE);
+      return null;
+    } catch (FileSystemException e) {
+      // another builder renamed its entry to the directory in the meantime
+      AppJar existing = load(dir);
+      if (existing == null) {
+        throw e;
+      }
+      return existing;
+    }
+  }
+
+  private static String getJarName(String artifactName, String contentHash) {
+    return String.format("%s-%s.jar", artifactName, AppJar.getArtifactVersion(contentHash));
+  }
+
+  /**
+   * Hashes the names and content of all entries in the given jar, which does not depend on when it was built.
+   * Also adds the class path entries that its classes were loaded from to the given list.
+   */
+  private static String hashContent(Path jarPath, ClassLoader classLoader, List<String> sources) throws IOException {
+    Hasher hasher = Hashing.sha256().newHasher();
+    TreeSet<String> roots = new TreeSet<>();
+    try (JarFile jarFile = new JarFile(jarPath.toFile())) {
+      List<JarEntry> entries = Collections.list(jarFile.entries());
+      entries.sort((e1, e2) -> e1.getName().compareTo(e2.getName()));
+      for (JarEntry entry : entries) {
+        hasher.putString(entry.getName(), StandardCharsets.UTF_8);
+        hasher.putLong(entry.getCrc());
+        if (entry.getName().endsWith(".class")) {
+          String root = getClassPathRoot(classLoader.getResource(entry.getName()), entry.getName());
+          if (root != null) {
+            roots.add(root);
+          }
+        }
+      }
+    }
+    sources.addAll(roots);
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Returns the directory or jar which the given resource was found in.
+   */
+  @Nullable
+  private static String getClassPathRoot(@Nullable URL resource, String name) {
+    if (resource == null) {
+      return null;
+    }
+    try {
+      switch (resource.getProtocol()) {
+        case "file":
+          Path path = Paths.get(resource.toURI());
+          return path.getRoot().resolve(path.subpath(0, path.getNameCount() - Paths.get(name).getNameCount()))
+            .toString();
+        case "jar":
+          String file = resource.getFile();
+          return Paths.get(new URL(file.substring(0, file.indexOf("!/"))).toURI()).toString();
+        default:
+          return null;
+      }
+    } catch (IOException | URISyntaxException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Fingerprints the given class path entries by the names, sizes and modification times of their files.
+   */
+  private static String fingerprint(List<String> sources) throws IOException {
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (String source : sources) {
+      Path path = Paths.get(source);
+      String fingerprint = FINGERPRINTS.get(path);
+      if (fingerprint == null) {
+        fingerprint = fingerprint(path);
+        FINGERPRINTS.put(path, fingerprint);
+      }
+      hasher.putString(source, StandardCharsets.UTF_8).putString(fingerprint, StandardCharsets.UTF_8);
+    }
+    return hasher.hash().toString();
+  }
+
+  private static String fingerprint(Path path) throws IOException {
+    final Hasher hasher = Hashing.sha256().newHasher();
+    if (!Files.exists(path)) {
+      return "";
+    }
+    if (!Files.isDirectory(path)) {
+      return hasher.putLong(Files.size(path)).putLong(Files.getLastModifiedTime(path).toMillis()).hash().toString();
+    }
+    final List<Path> files = new ArrayList<>();
+    Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        files.add(file);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    Collections.sort(files);
+    for (Path file : files) {
+      hasher.putString(path.relativize(file).toString(), StandardCharsets.UTF_8)
+        .putLong(Files.size(file)).putLong(Files.getLastModifiedTime(file).toMillis());
+    }
+    return hasher.hash().toString();
+  }
+
+  private static void deleteRecursively(Path dir) throws IOException {
+    if (!Files.exists(dir)) {
+      return;
+    }
+    Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  /**
+   * An application jar in the cache.
+   */
+  static final class AppJar {
+    private final String artifactName;
+    private final String contentHash;
+    private final List<String> sources;
+    private final String sourceFingerprint;
+    // only known once the jar was deployed
+    private volatile String applicationName;
+    private transient Path dir;
+
+    private AppJar(String artifactName, String contentHash, List<String> sources, String sourceFingerprint) {
+      this.artifactName = artifactName;
+      this.contentHash = contentHash;
+      this.sources = sources;
+      this.sourceFingerprint = sourceFingerprint;
+    }
+
+    private static String getArtifactVersion(String contentHash) {
+      return "1.0.0-" + contentHash.substring(0, 16);
+    }
+
+    File getFile() {
+      return dir.resolve(getJarName(artifactName, contentHash)).toFile();
+    }
+
+    String getArtifactName() {
+      return artifactName;
+    }
+
+    /**
+     * @return the artifact version, which identifies the content of the jar
+     */
+    String getArtifactVersion() {
+      return getArtifactVersion(contentHash);
+    }
+
+    /**
+     * @return the name of the application in the jar, or {@code null} if it is not known yet
+     */
+    @Nullable
+    String getApplicationName() {
+      return applicationName;
+    }
+
+    void setApplicationName(String applicationName) throws IOException {
+      this.applicationName = applicationName;
+      save();
+    }
+
+    private synchronized void save() throws IOException {
+      Path tmp = Files.createTempFile(dir, ENTRY_FILE, ".tmp");
+      try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+        GSON.toJson(this, writer);
+      }
+      Files.move(tmp, dir.resolve(ENTRY_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+  }
+}
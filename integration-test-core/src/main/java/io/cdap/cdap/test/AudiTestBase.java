@@ -17,52 +17,75 @@
 package io.cdap.cdap.test;
 
 import com.google.common.base.Preconditions;
-import com.google.common.io.CharStreams;
+import com.google.common.base.Throwables;
+import com.google.common.collect.SetMultimap;
 import io.cdap.cdap.api.app.Application;
+import io.cdap.cdap.api.artifact.ArtifactSummary;
 import io.cdap.cdap.api.dataset.Dataset;
 import io.cdap.cdap.api.dataset.DatasetAdmin;
 import io.cdap.cdap.api.dataset.DatasetProperties;
 import io.cdap.cdap.api.dataset.lib.KeyValueTable;
 import io.cdap.cdap.api.dataset.lib.cube.Cube;
 import io.cdap.cdap.api.dataset.table.Table;
+import io.cdap.cdap.client.ApplicationClient;
+import io.cdap.cdap.client.ArtifactClient;
 import io.cdap.cdap.client.DatasetClient;
+import io.cdap.cdap.client.NamespaceClient;
 import io.cdap.cdap.client.ProgramClient;
 import io.cdap.cdap.client.config.ClientConfig;
 import io.cdap.cdap.client.util.RESTClient;
+import io.cdap.cdap.common.ArtifactNotFoundException;
+import io.cdap.cdap.common.DatasetAlreadyExistsException;
 import io.cdap.cdap.common.utils.Tasks;
+import io.cdap.cdap.proto.ApplicationRecord;
 import io.cdap.cdap.proto.DatasetInstanceConfiguration;
 import io.cdap.cdap.proto.MetricQueryResult;
+import io.cdap.cdap.proto.NamespaceMeta;
 import io.cdap.cdap.proto.ProgramRunStatus;
 import io.cdap.cdap.proto.RunRecord;
+import io.cdap.cdap.proto.artifact.AppRequest;
+import io.cdap.cdap.proto.id.ApplicationId;
 import io.cdap.cdap.proto.id.DatasetId;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.ProgramId;
-import io.cdap.cdap.remote.dataset.AbstractDatasetApp;
-import io.cdap.cdap.remote.dataset.cube.CubeDatasetApp;
+import io.cdap.cdap.remote.dataset.DatasetProxyApp;
 import io.cdap.cdap.remote.dataset.cube.RemoteCube;
-import io.cdap.cdap.remote.dataset.kvtable.KVTableDatasetApp;
 import io.cdap.cdap.remote.dataset.kvtable.RemoteKeyValueTable;
 import io.cdap.cdap.remote.dataset.table.RemoteTable;
-import io.cdap.cdap.remote.dataset.table.TableDatasetApp;
+import io.cdap.cdap.test.profile.TestActivity;
 import io.cdap.chaosmonkey.proto.ClusterDisruptor;
 import io.cdap.common.ContentProvider;
+import io.cdap.common.http.HttpMethod;
 import io.cdap.common.http.HttpRequest;
 import io.cdap.common.http.HttpResponse;
 import org.junit.After;
 import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.rules.ExternalResource;
+import org.junit.rules.TestRule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 /**
  * Custom wrapper around IntegrationTestBase
@@ -77,11 +100,29 @@ public class AudiTestBase extends IntegrationTestBase {
   // For now, make it same as PROGRAM_START_STOP_TIMEOUT_SECONDS.
   protected static final int PROGRAM_FIRST_PROCESSED_TIMEOUT_SECONDS = PROGRAM_START_STOP_TIMEOUT_SECONDS;
 
-  protected static final NamespaceId TEST_NAMESPACE = getConfiguredNamespace();
+  // the configured namespace, unless the test runs in a namespace of its own alongside other tests
+  protected static final NamespaceId TEST_NAMESPACE = NamespaceIsolation.resolve(getConfiguredNamespace());
 
   // avoid logging of HttpRequest's body by default, to avoid verbose logging
   private static final int logBodyLimit = Integer.valueOf(System.getProperty("logRequestBodyLimit", "0"));
+  // so that concurrent callers in the same namespace only deploy the dataset proxy once
+  private static final ConcurrentMap<NamespaceId, Object> DATASET_PROXY_LOCKS = new ConcurrentHashMap<>();
+
+  // maximum number of tasks warmUp runs concurrently
+  private static final int WARM_UP_THREADS = Integer.valueOf(System.getProperty("warmUpThreads", "8"));
+  // specs which were warmed up already in this JVM, and the locks that let concurrent callers wait for a warm-up
+  private static final Set<WarmUpSpec> WARMED_UP = ConcurrentHashMap.newKeySet();
+  private static final ConcurrentMap<WarmUpSpec, Object> WARM_UP_LOCKS = new ConcurrentHashMap<>();
+  // maximum number of concurrent REST calls and attempts per call when cleaning up the namespace after a test
+  private static final int CLEANUP_THREADS = Integer.valueOf(System.getProperty("cleanupThreads", "8"));
+  private static final int CLEANUP_ATTEMPTS = Integer.valueOf(System.getProperty("cleanupAttempts", "3"));
+  // maximum number of applications deployApplications deploys concurrently
+  private static final int DEPLOY_THREADS = Integer.valueOf(System.getProperty("deployThreads", "4"));
+
   private final RESTClient restClient;
+  // base URLs of the dataset proxy services this test used. They are not kept across tests, because tearDown
+  // deletes all applications of the namespace, including the proxy.
+  private final ConcurrentMap<DatasetId, URL> datasetProxyURLs = new ConcurrentHashMap<>();
   protected DisruptorFactory disruptor;
 
   @After
@@ -91,6 +132,69 @@ public class AudiTestBase extends IntegrationTestBase {
     }
   }
 
+  @After
+  @Override
+  public void tearDown() throws Exception {
+    // every step runs even if an earlier one failed, so that the next test doesn't start with leftovers
+    Exception failure = null;
+    try {
+      // removes everything concurrently first, so that the sequential cleanup of IntegrationTestBase has little left
+      new NamespaceCleaner(getProgramClient(), getApplicationClient(), getDatasetClient(),
+                           new ArtifactClient(getClientConfig(), getRestClient()), CLEANUP_THREADS, CLEANUP_ATTEMPTS)
+        .clean(TEST_NAMESPACE);
+    } catch (Exception e) {
+      LOG.warn("Failed to clean up namespace {}", TEST_NAMESPACE, e);
+      failure = e;
+    }
+    // isolated namespaces are not managed by IntegrationTestBase, so they are removed here
+    if (NamespaceIsolation.isIsolated()) {
+      try {
+        getNamespaceClient().delete(TEST_NAMESPACE);
+      } catch (Exception e) {
+        failure = addFailure(failure, e);
+      }
+    }
+    try {
+      super.tearDown();
+    } catch (Exception e) {
+      failure = addFailure(failure, e);
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private static Exception addFailure(@Nullable Exception failure, Exception e) {
+    if (failure == null) {
+      return e;
+    }
+    failure.addSuppressed(e);
+    return failure;
+  }
+
+  @BeforeClass
+  public static void prepareTestClass() throws Exception {
+    // created before the class level setup of the test as well, which may use the namespace already
+    if (NamespaceIsolation.isIsolated()) {
+      new AudiTestBase().createIsolatedNamespace();
+    }
+  }
+
+  @Before
+  public void prepareTest() throws Exception {
+    // isolated namespaces are not managed by IntegrationTestBase, so they are created and removed here
+    if (NamespaceIsolation.isIsolated()) {
+      createIsolatedNamespace();
+    }
+  }
+
+  private void createIsolatedNamespace() throws Exception {
+    NamespaceClient namespaceClient = getNamespaceClient();
+    if (!namespaceClient.exists(TEST_NAMESPACE)) {
+      namespaceClient.create(new NamespaceMeta.Builder().setName(TEST_NAMESPACE).build());
+    }
+  }
+
   public AudiTestBase() {
     restClient = new RESTClient(getClientConfig());
     restClient.addListener(createRestClientListener());
@@ -109,24 +213,32 @@ public class AudiTestBase extends IntegrationTestBase {
     return new RESTClient.Listener() {
       @Override
       public void onRequest(HttpRequest httpRequest, int i) {
+        TestActivity.recordRestCall();
+        if (logBodyLimit <= 0) {
+          // omit the body from being logged, if user doesn't explicitly request it
+          LOG.info("Making request: {} {}", httpRequest.getMethod(), httpRequest.getURL());
+          return;
+        }
         try {
           ContentProvider<? extends InputStream> inputSupplier = httpRequest.getBody();
           String body = null;
           if (inputSupplier != null) {
-            try (InputStream is = inputSupplier.getInput()) {
-              body = CharStreams.toString(new InputStreamReader(is, StandardCharsets.UTF_8));
+            // only read what is logged, since a streamed body may be too large to hold in memory
+            try (Reader reader = new InputStreamReader(inputSupplier.getInput(), StandardCharsets.UTF_8)) {
+              char[] buffer = new char[logBodyLimit];
+              int length = 0;
+              int read = 0;
+              while (length < buffer.length && read >= 0) {
+                read = reader.read(buffer, length, buffer.length - length);
+                length += Math.max(read, 0);
+              }
+              body = new String(buffer, 0, length);
+              if (length >= logBodyLimit) {
+                body += " ... [TRIMMED]";
+              }
             }
           }
-
-          if (logBodyLimit > 0) {
-            if (body != null && body.length() >= logBodyLimit) {
-              body = body.substring(0, logBodyLimit) + " ... [TRIMMED]";
-            }
-            LOG.info("Making request: {} {} - body: {}", httpRequest.getMethod(), httpRequest.getURL(), body);
-          } else {
-            // omit the body from being logged, if user doesn't explicitly request it
-            LOG.info("Making request: {} {}", httpRequest.getMethod(), httpRequest.getURL());
-          }
+          LOG.info("Making request: {} {} - body: {}", httpRequest.getMethod(), httpRequest.getURL(), body);
         } catch (IOException e) {
           LOG.error("Failed to get body from http request: {} {}", httpRequest.getMethod(), httpRequest.getURL(), e);
         }
@@ -147,6 +259,155 @@ public class AudiTestBase extends IntegrationTestBase {
     return disruptor.getClusterDisruptor();
   }
 
+  /**
+   * Returns a rule that warms up the given spec before the first test of a class runs, to be used as a
+   * {@link org.junit.ClassRule}. Since a spec is only warmed up once per JVM, all classes of a suite can declare
+   * the same rule.
+   */
+  protected static TestRule warmUpRule(WarmUpSpec spec) {
+    return new ExternalResource() {
+      @Override
+      protected void before() throws Throwable {
+        new AudiTestBase().warmUp(spec);
+      }
+    };
+  }
+
+  /**
+   * Gets everything declared by the given spec ready concurrently: builds the jars of the applications and waits
+   * for the plugins of the system artifacts. Returns only once all of them are ready.
+   *
+   * A spec is only warmed up by the first call in this JVM, so that a suite pays for it once, however many of its
+   * tests call this.
+   *
+   * @throws Exception the first failure, with the failures of other tasks added as suppressed exceptions
+   */
+  protected void warmUp(WarmUpSpec spec) throws Exception {
+    // concurrent callers with the same spec wait for a single warm-up
+    synchronized (WARM_UP_LOCKS.computeIfAbsent(spec, k -> new Object())) {
+      if (WARMED_UP.contains(spec)) {
+        return;
+      }
+      runWarmUp(spec);
+      // only marked once it succeeded, so that a failed warm-up is retried by the next caller
+      WARMED_UP.add(spec);
+    }
+  }
+
+  private void runWarmUp(WarmUpSpec spec) throws Exception {
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (Class<? extends Application> applicationClass : spec.getApplications()) {
+      tasks.add(() -> {
+        AppJarCache.get(applicationClass);
+        return null;
+      });
+    }
+    if (!spec.getSystemArtifacts().isEmpty()) {
+      ArtifactClient artifactClient = new ArtifactClient(getClientConfig(), getRestClient());
+      String version = getMetaClient().getVersion().getVersion();
+      for (Map.Entry<String, SetMultimap<String, String>> artifact : spec.getSystemArtifacts().entrySet()) {
+        tasks.add(() -> {
+          // system artifacts are the same in all namespaces, and the default one exists before any test runs
+          PluginAvailability.waitFor(artifactClient, NamespaceId.DEFAULT.artifact(artifact.getKey(), version),
+                                     artifact.getValue(), 5, TimeUnit.MINUTES);
+          return null;
+        });
+      }
+    }
+    ConcurrentTasks.runAll(tasks, WARM_UP_THREADS, "warm-up-%d");
+  }
+
+  @Override
+  protected ApplicationManager deployApplication(Class<? extends Application> applicationClz) {
+    return deployApplication(TEST_NAMESPACE, applicationClz);
+  }
+
+  /**
+   * Deploys the given application. Its jar is only built if it is not in the {@link AppJarCache} yet, and only
+   * uploaded if the namespace does not have an artifact with the same content yet.
+   */
+  protected ApplicationManager deployApplication(NamespaceId namespace, Class<? extends Application> applicationClz) {
+    try {
+      return getTestManager().getApplicationManager(
+        deployCachedApplication(namespace, applicationClz, getRestClient(), getClientConfig()));
+    } catch (Exception e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  // deploys the application through the AppJarCache and returns the id it was deployed with
+  private ApplicationId deployCachedApplication(NamespaceId namespace, Class<? extends Application> applicationClz,
+                                                RESTClient restClient, ClientConfig clientConfig) throws Exception {
+    AppJarCache.AppJar jar = AppJarCache.get(applicationClz);
+    ApplicationClient applicationClient = new ApplicationClient(clientConfig, restClient);
+    String artifactName = jar.getArtifactName();
+    String artifactVersion = jar.getArtifactVersion();
+
+    String appName = jar.getApplicationName();
+    if (appName == null) {
+      // the name of the application is only known from the server once the jar was deployed the first time.
+      // Deploying the jar also adds it as artifact, named after the jar file.
+      applicationClient.deploy(namespace, jar.getFile());
+      List<ApplicationRecord> apps = applicationClient.list(namespace, artifactName, artifactVersion);
+      Preconditions.checkState(apps.size() == 1, "Expected one application of artifact %s-%s, but found %s",
+                               artifactName, artifactVersion, apps);
+      jar.setApplicationName(apps.get(0).getName());
+      return namespace.app(jar.getApplicationName());
+    }
+
+    ArtifactClient artifactClient = new ArtifactClient(clientConfig, restClient);
+    try {
+      artifactClient.getArtifactInfo(namespace.artifact(artifactName, artifactVersion));
+    } catch (ArtifactNotFoundException e) {
+      artifactClient.add(namespace, artifactName, () -> new FileInputStream(jar.getFile()), artifactVersion);
+    }
+    ApplicationId appId = namespace.app(appName);
+    applicationClient.deploy(appId, new AppRequest<>(new ArtifactSummary(artifactName, artifactVersion)));
+    return appId;
+  }
+
+  /**
+   * Deploys the given applications concurrently, with at most {@code deployThreads} (4 by default) deployments at
+   * a time, and returns once all of them are deployed.
+   *
+   * @param namespace the namespace to deploy the application classes to
+   * @param applicationClasses the application classes to deploy
+   * @param appRequests the applications to deploy from existing artifacts, such as pipelines
+   * @return the managers of all deployed applications, by application id
+   * @throws Exception the first failed deployment, with the failures of all others added as suppressed exceptions
+   */
+  protected Map<ApplicationId, ApplicationManager> deployApplications(
+    NamespaceId namespace, Collection<Class<? extends Application>> applicationClasses,
+    Map<ApplicationId, AppRequest<?>> appRequests) throws Exception {
+
+    List<Callable<ApplicationId>> deployments = new ArrayList<>();
+    for (Class<? extends Application> applicationClass : applicationClasses) {
+      deployments.add(() -> {
+        try {
+          return deployCachedApplication(namespace, applicationClass, getRestClient(), getClientConfig());
+        } catch (Exception e) {
+          throw new Exception("Failed to deploy " + applicationClass.getName() + " to " + namespace, e);
+        }
+      });
+    }
+    for (Map.Entry<ApplicationId, AppRequest<?>> request : appRequests.entrySet()) {
+      deployments.add(() -> {
+        try {
+          getApplicationClient().deploy(request.getKey(), request.getValue());
+          return request.getKey();
+        } catch (Exception e) {
+          throw new Exception("Failed to deploy " + request.getKey(), e);
+        }
+      });
+    }
+
+    Map<ApplicationId, ApplicationManager> managers = new LinkedHashMap<>();
+    for (ApplicationId appId : ConcurrentTasks.runAll(deployments, DEPLOY_THREADS, "deploy-%d")) {
+      managers.put(appId, getTestManager().getApplicationManager(appId));
+    }
+    return managers;
+  }
+
   protected void checkMetricAtLeast(final Map<String, String> tags, final String metric,
                                     long expectedCount, int timeOutSeconds) throws Exception {
     Tasks.waitFor(true, () -> getMetricValue(tags, metric) >= expectedCount,
@@ -175,13 +436,15 @@ public class AudiTestBase extends IntegrationTestBase {
                                           final String status, final long startTime, final long endTime)
     throws Exception {
     final List<RunRecord> runRecords = new ArrayList<>();
+    // only fetches the runs which are new or still changing on each poll, so that waiting does not get slower
+    // with the number of runs the program already has
+    final RunRecordFetcher fetcher = new RunRecordFetcher(programClient, program, startTime, endTime);
     // Tasks.waitFor can be removed when CDAP-3656 is fixed
     Tasks.waitFor(expectedSize, new Callable<Integer>() {
       @Override
       public Integer call() throws Exception {
         runRecords.clear();
-        runRecords.addAll(
-          programClient.getProgramRuns(program, status, startTime, endTime, Integer.MAX_VALUE));
+        runRecords.addAll(fetcher.fetch(status));
         return runRecords.size();
       }
     }, 30, TimeUnit.SECONDS, 500, TimeUnit.MILLISECONDS);
@@ -227,50 +490,104 @@ public class AudiTestBase extends IntegrationTestBase {
 
   protected DataSetManager<Table> getTableDataset(NamespaceId namespace, String datasetName, RESTClient restClient,
                                                   ClientConfig clientConfig) throws Exception {
-    return wrap(new RemoteTable(deployServiceForDataset(namespace, TableDatasetApp.class,
-                                                        datasetName, getTestManager(clientConfig, restClient)),
+    return wrap(new RemoteTable(getDatasetProxyURL(namespace.dataset(datasetName), Table.class,
+                                                   DatasetProxyApp.TABLE_PATH, restClient, clientConfig,
+                                                   getTestManager(clientConfig, restClient)),
                                 restClient, clientConfig));
   }
 
   protected DataSetManager<KeyValueTable> getKVTableDataset(String datasetName) throws Exception {
-    return wrap(new RemoteKeyValueTable(
-      deployServiceForDataset(TEST_NAMESPACE, KVTableDatasetApp.class, datasetName),
-      getRestClient(), getClientConfig()));
+    return getKVTableDataset(TEST_NAMESPACE.dataset(datasetName));
   }
 
   protected DataSetManager<KeyValueTable> getKVTableDataset(DatasetId datasetId) throws Exception {
-    return wrap(new RemoteKeyValueTable(deployServiceForDataset(datasetId.getParent(),
-                                                                KVTableDatasetApp.class, datasetId.getDataset()),
+    return wrap(new RemoteKeyValueTable(getDatasetProxyURL(datasetId, KeyValueTable.class,
+                                                           DatasetProxyApp.KV_TABLE_PATH),
                                         getRestClient(), getClientConfig()));
   }
 
   protected DataSetManager<Cube> getCubeDataset(String datasetName) throws Exception {
-    return wrap(new RemoteCube(deployServiceForDataset(TEST_NAMESPACE, CubeDatasetApp.class, datasetName),
+    return wrap(new RemoteCube(getDatasetProxyURL(TEST_NAMESPACE.dataset(datasetName), Cube.class,
+                                                  DatasetProxyApp.CUBE_PATH),
                                getRestClient(), getClientConfig()));
   }
 
-  // ensures that the Service for the dataset is deployed and running
-  // returns its baseURL
-  private URL deployServiceForDataset(NamespaceId namespace, Class<? extends Application> applicationClz,
-                                      String datasetName) throws Exception {
-    return deployServiceForDataset(namespace, applicationClz, datasetName, getTestManager());
+  // ensures that the dataset exists and that the Service proxying datasets is deployed and running
+  // returns the baseURL under which the dataset is served
+  private URL getDatasetProxyURL(DatasetId datasetId, Class<? extends Dataset> datasetClass,
+                                 String typePath) throws Exception {
+    return getDatasetProxyURL(datasetId, datasetClass, typePath, getRestClient(), getClientConfig(), getTestManager());
+  }
+
+  // ensures that the dataset exists and that the Service proxying datasets is deployed and running
+  // returns the baseURL under which the dataset is served
+  private URL getDatasetProxyURL(DatasetId datasetId, Class<? extends Dataset> datasetClass, String typePath,
+                                 RESTClient restClient, ClientConfig clientConfig,
+                                 TestManager testManager) throws Exception {
+    URL serviceURL = ensureDatasetProxy(datasetId, datasetClass, restClient, clientConfig, testManager);
+    return new URL(serviceURL, DatasetProxyApp.getDatasetPath(typePath, datasetId.getNamespace(),
+                                                              datasetId.getDataset()));
+  }
+
+  // ensures that the dataset exists and that the Service proxying datasets is deployed and running
+  // returns the baseURL of the Service
+  private URL ensureDatasetProxy(DatasetId datasetId, Class<? extends Dataset> datasetClass,
+                                 RESTClient restClient, ClientConfig clientConfig,
+                                 TestManager testManager) throws Exception {
+    // reuse the service from a previous call, as long as it is still running and the dataset wasn't deleted
+    URL serviceURL = datasetProxyURLs.get(datasetId);
+    if (serviceURL != null && isDatasetServed(serviceURL, datasetId, restClient, clientConfig)) {
+      return serviceURL;
+    }
+
+    DatasetClient datasetClient = new DatasetClient(clientConfig, restClient);
+    if (!datasetClient.exists(datasetId)) {
+      try {
+        datasetClient.create(datasetId, datasetClass.getName());
+      } catch (DatasetAlreadyExistsException e) {
+        // created by someone else in the meantime, which is fine
+      }
+    }
+    serviceURL = deployDatasetProxy(datasetId.getParent(), restClient, clientConfig, testManager);
+    datasetProxyURLs.put(datasetId, serviceURL);
+    return serviceURL;
   }
 
-  // ensures that the Service for the dataset is deployed and running
+  // ensures that the Service proxying datasets is deployed and running in the namespace
   // returns its baseURL
-  private URL deployServiceForDataset(NamespaceId namespace, Class<? extends Application> applicationClz,
-                                      String datasetName, TestManager testManager) throws Exception {
-    ApplicationManager appManager =
-      testManager.deployApplication(namespace, applicationClz, new AbstractDatasetApp.DatasetConfig(datasetName));
-    ServiceManager serviceManager =
-      appManager.getServiceManager(AbstractDatasetApp.DatasetService.class.getSimpleName());
-
-    // start the service and wait until it becomes reachable
-    if (!serviceManager.isRunning()) {
-      serviceManager.start();
+  private URL deployDatasetProxy(NamespaceId namespace, RESTClient restClient, ClientConfig clientConfig,
+                                 TestManager testManager) throws Exception {
+    // the same deployment serves all datasets, so only deploy it if it isn't there yet
+    synchronized (DATASET_PROXY_LOCKS.computeIfAbsent(namespace, k -> new Object())) {
+      ApplicationId appId = namespace.app(DatasetProxyApp.NAME);
+      ApplicationManager appManager = new ApplicationClient(clientConfig, restClient).exists(appId)
+        ? testManager.getApplicationManager(appId)
+        : testManager.getApplicationManager(
+            deployCachedApplication(namespace, DatasetProxyApp.class, restClient, clientConfig));
+      ServiceManager serviceManager = appManager.getServiceManager(DatasetProxyApp.SERVICE_NAME);
+
+      // start the service and wait until it becomes reachable
+      if (!serviceManager.isRunning()) {
+        serviceManager.start();
+      }
+      serviceManager.waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      return serviceManager.getServiceURL(PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+  }
+
+  // a single request to the proxy service, which fails if either the service or the dataset is gone
+  private boolean isDatasetServed(URL serviceURL, DatasetId datasetId,
+                                  RESTClient restClient, ClientConfig clientConfig) {
+    try {
+      URL pingURL = new URL(serviceURL, DatasetProxyApp.getPingPath(datasetId.getNamespace(), datasetId.getDataset()));
+      HttpResponse response = restClient.execute(HttpMethod.GET, pingURL, clientConfig.getAccessToken(),
+                                                 HttpURLConnection.HTTP_NOT_FOUND,
+                                                 HttpURLConnection.HTTP_UNAVAILABLE);
+      return response.getResponseCode() == HttpURLConnection.HTTP_OK;
+    } catch (Exception e) {
+      LOG.debug("Dataset proxy at {} is not reachable for {}", serviceURL, datasetId, e);
+      return false;
     }
-    serviceManager.waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
-    return serviceManager.getServiceURL(PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
   }
 
   // wraps a Dataset within a DatasetManager
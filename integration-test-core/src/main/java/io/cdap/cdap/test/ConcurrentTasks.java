@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a batch of tasks on a bounded number of threads and waits for all of them, so that a failing task does not
+ * leave others running unnoticed.
+ */
+final class ConcurrentTasks {
+
+  private ConcurrentTasks() {
+  }
+
+  /**
+   * Runs the given tasks with at most the given number of threads, and returns once all of them completed.
+   *
+   * @param tasks the tasks to run
+   * @param maxThreads the maximum number of tasks to run concurrently
+   * @param threadNameFormat format of the thread names, as for {@link ThreadFactoryBuilder#setNameFormat(String)}
+   * @return the results of the tasks, in the order of the tasks
+   * @throws Exception the first failure, with the failures of other tasks added as suppressed exceptions
+   */
+  static <T> List<T> runAll(List<? extends Callable<T>> tasks, int maxThreads,
+                            String threadNameFormat) throws Exception {
+    List<T> results = new ArrayList<>();
+    if (tasks.isEmpty()) {
+      return results;
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(
+      Math.min(maxThreads, tasks.size()),
+      new ThreadFactoryBuilder().setNameFormat(threadNameFormat).setDaemon(true).build());
+    try {
+      // invokeAll returns only after all tasks completed, so it is a barrier for all of them
+      Exception failure = null;
+      for (Future<T> future : executor.invokeAll(tasks)) {
+        try {
+          results.add(future.get());
+        } catch (ExecutionException e) {
+          results.add(null);
+          Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+          if (failure == null) {
+            failure = cause;
+          } else {
+            failure.addSuppressed(cause);
+          }
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+      return results;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test;
+
+import io.cdap.cdap.api.artifact.ArtifactScope;
+import io.cdap.cdap.api.artifact.ArtifactSummary;
+import io.cdap.cdap.client.ApplicationClient;
+import io.cdap.cdap.client.ArtifactClient;
+import io.cdap.cdap.client.DatasetClient;
+import io.cdap.cdap.client.ProgramClient;
+import io.cdap.cdap.common.NotFoundException;
+import io.cdap.cdap.common.UnauthenticatedException;
+import io.cdap.cdap.common.utils.Tasks;
+import io.cdap.cdap.proto.ApplicationRecord;
+import io.cdap.cdap.proto.BatchProgram;
+import io.cdap.cdap.proto.BatchProgramStatus;
+import io.cdap.cdap.proto.DatasetSpecificationSummary;
+import io.cdap.cdap.proto.ProgramRecord;
+import io.cdap.cdap.proto.id.ApplicationId;
+import io.cdap.cdap.proto.id.NamespaceId;
+import io.cdap.cdap.security.spi.authorization.UnauthorizedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Removes all applications, datasets and user artifacts from a namespace, with a bounded number of concurrent
+ * REST calls. It works in phases, each of which completes before the next one starts: all programs are stopped
+ * first, then all applications are deleted, and then all datasets and artifacts. Calls that fail are retried with
+ * backoff, and entities which are already gone count as deleted.
+ */
+public final class NamespaceCleaner {
+
+  private static final Logger LOG = LoggerFactory.getLogger(NamespaceCleaner.class);
+
+  private final ProgramClient programClient;
+  private final ApplicationClient applicationClient;
+  private final DatasetClient datasetClient;
+  private final ArtifactClient artifactClient;
+  private final int parallelism;
+  private final int maxAttempts;
+
+  /**
+   * @param parallelism the maximum number of REST calls to make concurrently
+   * @param maxAttempts how many times to try each call before giving up
+   */
+  public NamespaceCleaner(ProgramClient programClient, ApplicationClient applicationClient,
+                          DatasetClient datasetClient, ArtifactClient artifactClient, int parallelism,
+                          int maxAttempts) {
+    this.programClient = programClient;
+    this.applicationClient = applicationClient;
+    this.datasetClient = datasetClient;
+    this.artifactClient = artifactClient;
+    this.parallelism = parallelism;
+    this.maxAttempts = maxAttempts;
+  }
+
+  /**
+   * Removes everything from the given namespace. The namespace itself is kept.
+   *
+   * @throws Exception the first failure of a phase, with other failures of the phase added as suppressed exceptions
+   */
+  public void clean(NamespaceId namespace) throws Exception {
+    List<ApplicationRecord> apps = withRetries("list applications", () -> applicationClient.list(namespace));
+    if (apps == null) {
+      // the namespace does not exist
+      return;
+    }
+    List<ApplicationId> appIds = new ArrayList<>();
+    for (ApplicationRecord app : apps) {
+      appIds.add(namespace.app(app.getName(), app.getAppVersion()));
+    }
+
+    stopPrograms(namespace, appIds);
+
+    List<Callable<Void>> deletes = new ArrayList<>();
+    for (ApplicationId appId : appIds) {
+      deletes.add(() -> {
+        withRetries("delete " + appId, () -> {
+          applicationClient.delete(appId);
+          return null;
+        });
+        return null;
+      });
+    }
+    ConcurrentTasks.runAll(deletes, parallelism, "cleanup-%d");
+
+    // datasets and artifacts don't depend on each other, so they are deleted in the same phase
+    deletes.clear();
+    List<DatasetSpecificationSummary> datasets = withRetries("list datasets", () -> datasetClient.list(namespace));
+    for (DatasetSpecificationSummary dataset : nullToEmpty(datasets)) {
+      deletes.add(() -> {
+        withRetries("delete dataset " + dataset.getName(), () -> {
+          datasetClient.delete(namespace.dataset(dataset.getName()));
+          return null;
+        });
+        return null;
+      });
+    }
+    List<ArtifactSummary> artifacts = withRetries("list artifacts",
+                                                  () -> artifactClient.list(namespace, ArtifactScope.USER));
+    for (ArtifactSummary artifact : nullToEmpty(artifacts)) {
+      deletes.add(() -> {
+        withRetries("delete artifact " + artifact.getName(), () -> {
+          artifactClient.delete(namespace.artifact(artifact.getName(), artifact.getVersion()));
+          return null;
+        });
+        return null;
+      });
+    }
+    ConcurrentTasks.runAll(deletes, parallelism, "cleanup-%d");
+  }
+
+  /**
+   * Stops all programs of the given applications with a single batch call, and waits until none of them is running.
+   */
+  private void stopPrograms(NamespaceId namespace, List<ApplicationId> appIds) throws Exception {
+    List<Callable<List<ProgramRecord>>> listings = new ArrayList<>();
+    for (ApplicationId appId : appIds) {
+      listings.add(() -> withRetries("list programs of " + appId, () -> applicationClient.listPrograms(appId)));
+    }
+    List<BatchProgram> programs = new ArrayList<>();
+    for (List<ProgramRecord> records : ConcurrentTasks.runAll(listings, parallelism, "cleanup-%d")) {
+      if (records == null) {
+        // the application was deleted already
+        continue;
+      }
+      for (ProgramRecord record : records) {
+        programs.add(new BatchProgram(record.getApp(), record.getType(), record.getName()));
+      }
+    }
+    if (programs.isEmpty()) {
+      return;
+    }
+
+    // programs which are not running are reported in the results, rather than failing the call
+    withRetries("stop programs", () -> programClient.stop(namespace, programs));
+    Tasks.waitFor(true, () -> {
+      for (BatchProgramStatus status : programClient.getStatus(namespace, programs)) {
+        // a program that can't be found is not running either
+        if (status.getStatusCode() == 200 && !"STOPPED".equals(status.getStatus())) {
+          return false;
+        }
+      }
+      return true;
+    }, 5, TimeUnit.MINUTES, 1, TimeUnit.SECONDS);
+  }
+
+  private static <T> List<T> nullToEmpty(@Nullable List<T> list) {
+    return list == null ? Collections.<T>emptyList() : list;
+  }
+
+  /**
+   * Makes the given call, and retries it with exponential backoff if it fails. A {@link NotFoundException} means
+   * that there is nothing left to do, so {@code null} is returned. Authentication and authorization failures are not
+   * retried, since they would not go away.
+   */
+  @Nullable
+  private <T> T withRetries(String description, Callable<T> call) throws Exception {
+    long backoffMillis = 500;
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return call.call();
+      } catch (NotFoundException e) {
+        return null;
+      } catch (UnauthenticatedException | UnauthorizedException | InterruptedException e) {
+        throw e;
+      } catch (Exception e) {
+        if (attempt >= maxAttempts) {
+          throw e;
+        }
+        LOG.warn("Failed to {}, retrying in {} ms", description, backoffMillis, e);
+        TimeUnit.MILLISECONDS.sleep(backoffMillis);
+        backoffMillis *= 2;
+      }
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test;
+
+import io.cdap.cdap.proto.id.NamespaceId;
+
+import javax.annotation.Nullable;
+
+/**
+ * Holds the namespace that tests run in when they are run by one of several concurrent workers. Each worker loads
+ * the test classes with its own ClassLoader, and so has its own copy of this class. The worker sets the namespace
+ * before loading any test class, so that {@link AudiTestBase#TEST_NAMESPACE} is initialized with it.
+ */
+public final class NamespaceIsolation {
+
+  @Nullable
+  private static volatile String namespace;
+
+  private NamespaceIsolation() {
+  }
+
+  /**
+   * Sets the namespace that tests loaded by the same ClassLoader as this class should run in.
+   * This is called through reflection, since the caller doesn't share this ClassLoader.
+   */
+  public static void setNamespace(String namespace) {
+    NamespaceIsolation.namespace = namespace;
+  }
+
+  /**
+   * Returns the name of the namespace for the given worker, derived from the configured namespace.
+   */
+  public static String getWorkerNamespace(int worker) {
+    return String.format("%s_worker%d", IntegrationTestBase.getConfiguredNamespace().getNamespace(), worker);
+  }
+
+  /**
+   * @return whether tests run in a namespace of their own, rather than the configured one
+   */
+  public static boolean isIsolated() {
+    return namespace != null;
+  }
+
+  /**
+   * @return the namespace tests should run in, or the given configured namespace if tests are not isolated
+   */
+  public static NamespaceId resolve(NamespaceId configured) {
+    String isolated = namespace;
+    return isolated == null ? configured : new NamespaceId(isolated);
+  }
+}
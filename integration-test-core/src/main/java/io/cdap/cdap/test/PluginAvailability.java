@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test;
+
+import com.google.common.collect.SetMultimap;
+import io.cdap.cdap.api.artifact.ArtifactScope;
+import io.cdap.cdap.client.ArtifactClient;
+import io.cdap.cdap.common.ArtifactNotFoundException;
+import io.cdap.cdap.common.utils.Tasks;
+import io.cdap.cdap.proto.artifact.PluginSummary;
+import io.cdap.cdap.proto.id.ArtifactId;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * JVM wide registry of the plugins which were seen to extend a system artifact. Once a plugin was seen for an
+ * artifact version, checking for it again does not make any calls, so tests only pay for plugin discovery once.
+ */
+public final class PluginAvailability {
+
+  // artifact -> plugin type -> names of the plugins of that type seen for the artifact
+  private static final ConcurrentMap<ArtifactId, Map<String, Set<String>>> AVAILABLE = new ConcurrentHashMap<>();
+
+  private PluginAvailability() {
+  }
+
+  /**
+   * Waits until the given plugins extend the given system artifact.
+   *
+   * @param artifactClient the client used to look up the plugins
+   * @param parent the parent artifact the plugins have to extend
+   * @param plugins the names of the plugins that have to be available, by plugin type
+   * @param timeout how long to wait for the plugins
+   * @param timeoutUnit unit of time for timeout
+   */
+  public static void waitFor(ArtifactClient artifactClient, ArtifactId parent, SetMultimap<String, String> plugins,
+                             long timeout, TimeUnit timeoutUnit)
+    throws InterruptedException, ExecutionException, TimeoutException {
+    Map<String, Set<String>> available = AVAILABLE.computeIfAbsent(parent, k -> new ConcurrentHashMap<>());
+    if (containsAll(available, plugins)) {
+      return;
+    }
+    // concurrent callers for the same artifact wait for a single lookup rather than all polling
+    synchronized (available) {
+      // another caller may have seen the plugins while this one waited for the lock
+      if (containsAll(available, plugins)) {
+        return;
+      }
+      Tasks.waitFor(true, () -> {
+        try {
+          // a single call tells whether all plugin types are there at all, before looking up the plugins of each type
+          List<String> types = artifactClient.getPluginTypes(parent, ArtifactScope.SYSTEM);
+          if (!types.containsAll(plugins.keySet())) {
+            return false;
+          }
+          for (String type : plugins.keySet()) {
+            Set<String> availableOfType = available.getOrDefault(type, new HashSet<>());
+            if (availableOfType.containsAll(plugins.get(type))) {
+              continue;
+            }
+            Set<String> names = ConcurrentHashMap.newKeySet();
+            for (PluginSummary summary : artifactClient.getPluginSummaries(parent, type, ArtifactScope.SYSTEM)) {
+              names.add(summary.getName());
+            }
+            available.put(type, names);
+          }
+          return containsAll(available, plugins);
+        } catch (ArtifactNotFoundException e) {
+          // happens if the parent artifact was not added yet
+          return false;
+        }
+      }, timeout, timeoutUnit, 3, TimeUnit.SECONDS);
+    }
+  }
+
+  private static boolean containsAll(Map<String, Set<String>> available, SetMultimap<String, String> plugins) {
+    for (Map.Entry<String, Set<String>> entry : plugins.asMap().entrySet()) {
+      Set<String> availableOfType = available.get(entry.getKey());
+      if (availableOfType == null || !availableOfType.containsAll(entry.getValue())) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
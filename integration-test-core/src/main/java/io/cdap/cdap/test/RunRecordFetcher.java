@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test;
+
+import io.cdap.cdap.client.ProgramClient;
+import io.cdap.cdap.proto.ProgramRunStatus;
+import io.cdap.cdap.proto.RunRecord;
+import io.cdap.cdap.proto.id.ProgramId;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Fetches the run records of a program incrementally. Each call to {@link #fetch(String)} only asks for runs that
+ * started at or after the oldest run that may still change, so polling for a run costs the same regardless of how
+ * many runs the program already has. Large histories are read in pages of bounded size.
+ */
+public class RunRecordFetcher {
+
+  private static final int DEFAULT_PAGE_SIZE = 100;
+  private static final Set<ProgramRunStatus> END_STATES =
+    EnumSet.of(ProgramRunStatus.COMPLETED, ProgramRunStatus.FAILED,
+               ProgramRunStatus.KILLED, ProgramRunStatus.REJECTED);
+
+  private final ProgramClient programClient;
+  private final ProgramId program;
+  private final long startTime;
+  private final long endTime;
+  private final int pageSize;
+  // all runs seen so far, keyed by run id
+  private final Map<String, RunRecord> runs = new LinkedHashMap<>();
+  // start time (in seconds) from which the next fetch has to look for new or changed runs
+  private long frontier;
+
+  public RunRecordFetcher(ProgramClient programClient, ProgramId program, long startTime, long endTime) {
+    this(programClient, program, startTime, endTime, DEFAULT_PAGE_SIZE);
+  }
+
+  public RunRecordFetcher(ProgramClient programClient, ProgramId program,
+                          long startTime, long endTime, int pageSize) {
+    if (pageSize <= 0) {
+      throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+    }
+    this.programClient = programClient;
+    this.program = program;
+    this.startTime = startTime;
+    this.endTime = endTime;
+    this.pageSize = pageSize;
+    this.frontier = startTime;
+  }
+
+  /**
+   * Fetches the runs which are new or may have changed since the previous call.
+   *
+   * @return all known runs of the program which have the given status, ordered from newest to oldest
+   */
+  public List<RunRecord> fetch(String status) throws Exception {
+    long pageEnd = endTime;
+    while (true) {
+      List<RunRecord> page =
+        programClient.getProgramRuns(program, ProgramRunStatus.ALL.name(), frontier, pageEnd, pageSize);
+      long oldestStart = Long.MAX_VALUE;
+      for (RunRecord record : page) {
+        runs.put(record.getPid(), record);
+        oldestStart = Math.min(oldestStart, record.getStartTs());
+      }
+      // a page which is not full is the last one
+      if (page.size() < pageSize) {
+        break;
+      }
+      // A full page may have left out runs which started in the same second as its oldest run, and start times
+      // don't tell those runs apart. So that second is fetched without a limit, and paging continues before it.
+      for (RunRecord record : programClient.getProgramRuns(program, ProgramRunStatus.ALL.name(), oldestStart,
+                                                           oldestStart + 1, Integer.MAX_VALUE)) {
+        runs.put(record.getPid(), record);
+      }
+      if (oldestStart <= frontier) {
+        break;
+      }
+      // the end of the range is exclusive
+      pageEnd = oldestStart;
+    }
+    advanceFrontier();
+
+    List<RunRecord> result = new ArrayList<>();
+    for (RunRecord record : runs.values()) {
+      if (ProgramRunStatus.ALL.name().equalsIgnoreCase(status) || record.getStatus().name().equalsIgnoreCase(status)) {
+        result.add(record);
+      }
+    }
+    result.sort(Comparator.comparingLong(RunRecord::getStartTs).reversed());
+    return result;
+  }
+
+  // Runs that reached an end state never change again. Only runs from the oldest unfinished run onwards,
+  // or else only runs newer than the newest one seen, have to be requested again.
+  private void advanceFrontier() {
+    long oldestActive = Long.MAX_VALUE;
+    long newest = frontier;
+    for (RunRecord record : runs.values()) {
+      newest = Math.max(newest, record.getStartTs());
+      if (!END_STATES.contains(record.getStatus())) {
+        oldestActive = Math.min(oldestActive, record.getStartTs());
+      }
+    }
+    frontier = Math.max(startTime, Math.min(oldestActive, newest));
+  }
+}
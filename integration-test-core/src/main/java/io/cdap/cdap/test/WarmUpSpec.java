@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test;
+
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.SetMultimap;
+import io.cdap.cdap.api.app.Application;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Declares what the tests of a class need ready before they run, so that {@link AudiTestBase#warmUp(WarmUpSpec)}
+ * can get all of it ready concurrently, once per JVM. Only what survives the cleanup of the test namespace after
+ * each test can be declared: the jars of applications, which are built into the local jar cache, and the plugins of
+ * system artifacts. Specs with the same content are equal.
+ */
+public final class WarmUpSpec {
+
+  private final List<Class<? extends Application>> applications;
+  private final Map<String, SetMultimap<String, String>> systemArtifacts;
+
+  private WarmUpSpec(List<Class<? extends Application>> applications,
+                     Map<String, SetMultimap<String, String>> systemArtifacts) {
+    this.applications = Collections.unmodifiableList(new ArrayList<>(applications));
+    this.systemArtifacts = Collections.unmodifiableMap(new LinkedHashMap<>(systemArtifacts));
+  }
+
+  /**
+   * @return the application classes to build the jars of
+   */
+  public List<Class<? extends Application>> getApplications() {
+    return applications;
+  }
+
+  /**
+   * @return the names of the system artifacts to wait for, with the plugins that have to extend them, by plugin type
+   */
+  public Map<String, SetMultimap<String, String>> getSystemArtifacts() {
+    return systemArtifacts;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    WarmUpSpec other = (WarmUpSpec) o;
+    return applications.equals(other.applications) && systemArtifacts.equals(other.systemArtifacts);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(applications, systemArtifacts);
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Builder for {@link WarmUpSpec}.
+   */
+  public static final class Builder {
+    private final List<Class<? extends Application>> applications = new ArrayList<>();
+    private final Map<String, SetMultimap<String, String>> systemArtifacts = new LinkedHashMap<>();
+
+    private Builder() {
+    }
+
+    /**
+     * Adds an application whose jar should be built, so that deploying it only has to upload the jar.
+     */
+    public Builder addApplication(Class<? extends Application> applicationClass) {
+      applications.add(applicationClass);
+      return this;
+    }
+
+    /**
+     * Adds a system artifact of the version of CDAP, which has to be extended by the given plugins before tests can
+     * run.
+     *
+     * @param name the name of the artifact
+     * @param plugins the names of the plugins that have to extend the artifact, by plugin type
+     */
+    public Builder addSystemArtifact(String name, SetMultimap<String, String> plugins) {
+      systemArtifacts.put(name, ImmutableSetMultimap.copyOf(plugins));
+      return this;
+    }
+
+    public WarmUpSpec build() {
+      return new WarmUpSpec(applications, systemArtifacts);
+    }
+  }
+}
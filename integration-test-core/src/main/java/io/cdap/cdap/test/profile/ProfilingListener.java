@@ -0,0 +1,360 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test.profile;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link RunListener} which profiles every test method and test class: wall time, time spent in
+ * {@code Tasks.waitFor}, REST calls made through {@code AudiTestBase}'s client, and heap and GC deltas of this JVM.
+ * It is registered with surefire for all modules, and only records anything if the {@code test.profile.dir} system
+ * property is set. The profiles are then added to {@code test-profile.json} and {@code test-profile.csv} in that
+ * directory, sorted by wall time, slowest first. Profiles from earlier runs are kept unless the same test runs again.
+ *
+ * Heap and GC deltas are JVM wide, so they include the activity of concurrently running tests.
+ *
+ * Runners which only pass on the events of a test once it is done, such as the concurrent workers of
+ * {@code AutoSuiteRunner}, have to add the listener returned by {@link #getWorkerListener()} to the notifier of the
+ * worker, so that tests are measured on the thread that runs them, while they run.
+ */
+@RunListener.ThreadSafe
+public class ProfilingListener extends RunListener {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ProfilingListener.class);
+  private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+  private static final Type PROFILES_TYPE = new TypeToken<List<TestProfile>>() { }.getType();
+
+  // directory to write the report to. Profiling is disabled if it is not set.
+  private static final String REPORT_DIR = "test.profile.dir";
+  // how often the threads of running tests are sampled to find out whether they are in Tasks.waitFor
+  private static final String SAMPLE_INTERVAL_MILLIS = "test.profile.sample.interval.ms";
+  private static final String JSON_REPORT = "test-profile.json";
+  private static final String CSV_REPORT = "test-profile.csv";
+
+  // the enabled listener of this JVM, which workers report to
+  @Nullable
+  private static volatile ProfilingListener enabled;
+
+  @Nullable
+  private final Path reportDir;
+  private final long sampleIntervalMillis;
+  private final ConcurrentMap<Description, RunningTest> running = new ConcurrentHashMap<>();
+  // profiles of methods and classes by key, guarded by this
+  private final Map<String, TestProfile> profiles = new LinkedHashMap<>();
+  // start of the first test method of each class, guarded by this
+  private final Map<String, Long> classStartTimes = new LinkedHashMap<>();
+  // tests and classes measured through a worker listener, whose events passed on later are not measured again
+  private final Set<Description> measuredByWorkers = ConcurrentHashMap.newKeySet();
+  private ScheduledExecutorService sampler;
+
+  public ProfilingListener() {
+    String dir = System.getProperty(REPORT_DIR);
+    this.reportDir = dir == null || dir.isEmpty() ? null : Paths.get(dir);
+    this.sampleIntervalMillis = Long.getLong(SAMPLE_INTERVAL_MILLIS, 20L);
+    if (reportDir != null) {
+      enabled = this;
+    }
+  }
+
+  /**
+   * Returns a listener for the notifier of a worker thread, which measures the tests it runs for the enabled
+   * profiling listener. It does nothing if profiling is not enabled.
+   */
+  public static RunListener getWorkerListener() {
+    final ProfilingListener listener = enabled;
+    if (listener == null) {
+      return new RunListener();
+    }
+    return new RunListener() {
+      @Override
+      public void testStarted(Description description) {
+        listener.measuredByWorkers.add(description);
+        listener.started(description);
+      }
+
+      @Override
+      public void testFailure(Failure failure) {
+        listener.measuredByWorkers.add(failure.getDescription());
+        listener.failed(failure);
+      }
+
+      @Override
+      public void testAssumptionFailure(Failure failure) {
+        testFailure(failure);
+      }
+
+      @Override
+      public void testFinished(Description description) {
+        listener.finished(description);
+      }
+    };
+  }
+
+  @Override
+  public void testStarted(Description description) {
+    if (!measuredByWorkers.contains(description)) {
+      started(description);
+    }
+  }
+
+  @Override
+  public void testFailure(Failure failure) {
+    if (!measuredByWorkers.contains(failure.getDescription())) {
+      failed(failure);
+    }
+  }
+
+  @Override
+  public void testAssumptionFailure(Failure failure) {
+    testFailure(failure);
+  }
+
+  @Override
+  public void testFinished(Description description) {
+    if (!measuredByWorkers.contains(description)) {
+      finished(description);
+    }
+  }
+
+  private void started(Description description) {
+    if (reportDir == null) {
+      return;
+    }
+    startSampler();
+    synchronized (this) {
+      if (!classStartTimes.containsKey(description.getClassName())) {
+        classStartTimes.put(description.getClassName(), System.currentTimeMillis());
+      }
+    }
+    // test methods start and finish on the thread that runs them
+    running.put(description, new RunningTest(Thread.currentThread(), TestActivity.startRecording()));
+  }
+
+  private void failed(Failure failure) {
+    if (reportDir == null) {
+      return;
+    }
+    RunningTest test = running.get(failure.getDescription());
+    if (test != null) {
+      test.failed = true;
+    } else {
+      // failures outside of test methods, such as in @BeforeClass
+      synchronized (this) {
+        getProfile(failure.getDescription().getClassName(), null).setFailed();
+      }
+    }
+  }
+
+  private void finished(Description description) {
+    RunningTest test = running.remove(description);
+    if (test == null) {
+      return;
+    }
+    TestActivity.stopRecording();
+    long finishTime = System.currentTimeMillis();
+    long heapDelta = getUsedHeap() - test.startHeap;
+    long gcCount = getGcCount() - test.startGcCount;
+    long gcMillis = getGcMillis() - test.startGcMillis;
+
+    String className = description.getClassName();
+    synchronized (this) {
+      TestProfile method = getProfile(className, description.getMethodName());
+      method.setWallMillis(finishTime - test.startTime);
+      method.add(test.waitForMillis.get(), test.restCalls.get(), heapDelta, gcCount, gcMillis);
+
+      TestProfile cls = getProfile(className, null);
+      cls.setWallMillis(finishTime - classStartTimes.get(className));
+      cls.add(test.waitForMillis.get(), test.restCalls.get(), heapDelta, gcCount, gcMillis);
+      if (test.failed) {
+        method.setFailed();
+        cls.setFailed();
+      }
+    }
+  }
+
+  @Override
+  public void testRunFinished(Result result) {
+    if (reportDir == null) {
+      return;
+    }
+    synchronized (this) {
+      if (sampler != null) {
+        sampler.shutdownNow();
+        sampler = null;
+      }
+      if (!profiles.isEmpty()) {
+        writeReport();
+      }
+    }
+  }
+
+  private synchronized void startSampler() {
+    if (sampler != null) {
+      return;
+    }
+    sampler = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("test-profile-sampler").build());
+    sampler.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        for (RunningTest test : running.values()) {
+          if (isInWaitFor(test.thread.getStackTrace())) {
+            test.waitForMillis.addAndGet(sampleIntervalMillis);
+          }
+        }
+      }
+    }, sampleIntervalMillis, sampleIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  // covers both the Tasks of cdap-common and the copy in this module
+  private static boolean isInWaitFor(StackTraceElement[] stackTrace) {
+    for (StackTraceElement element : stackTrace) {
+      if ("waitFor".equals(element.getMethodName()) && element.getClassName().endsWith(".Tasks")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // must be called while holding the lock of this
+  private TestProfile getProfile(String className, @Nullable String methodName) {
+    TestProfile profile = new TestProfile(className, methodName);
+    TestProfile existing = profiles.get(profile.getKey());
+    if (existing != null) {
+      return existing;
+    }
+    profiles.put(profile.getKey(), profile);
+    return profile;
+  }
+
+  /**
+   * Adds the profiles of this run to the report, replacing the profiles of the same tests in it.
+   * Surefire may run every test class in its own JVM, so each of them adds to the report of the earlier ones.
+   */
+  private void writeReport() {
+    Path jsonFile = reportDir.resolve(JSON_REPORT);
+    Map<String, TestProfile> report = new LinkedHashMap<>();
+    try {
+      Files.createDirectories(reportDir);
+      if (Files.exists(jsonFile)) {
+        try (Reader reader = Files.newBufferedReader(jsonFile, StandardCharsets.UTF_8)) {
+          List<TestProfile> previous = GSON.fromJson(reader, PROFILES_TYPE);
+          if (previous != null) {
+            for (TestProfile profile : previous) {
+              report.put(profile.getKey(), profile);
+            }
+          }
+        } catch (JsonParseException e) {
+          LOG.warn("Ignoring unreadable test profile report {}", jsonFile, e);
+        }
+      }
+      report.putAll(profiles);
+
+      List<TestProfile> sorted = new ArrayList<>(report.values());
+      sorted.sort(Comparator.comparingLong(TestProfile::getWallMillis).reversed()
+                    .thenComparing(TestProfile::getKey));
+      try (Writer writer = Files.newBufferedWriter(jsonFile, StandardCharsets.UTF_8)) {
+        GSON.toJson(sorted, PROFILES_TYPE, writer);
+      }
+      try (Writer writer = Files.newBufferedWriter(reportDir.resolve(CSV_REPORT), StandardCharsets.UTF_8)) {
+        writer.write(TestProfile.CSV_HEADER);
+        writer.write('\n');
+        for (TestProfile profile : sorted) {
+          writer.write(profile.toCsvRow());
+          writer.write('\n');
+        }
+      }
+    } catch (IOException e) {
+      LOG.warn("Failed to write test profile report to {}", reportDir, e);
+    }
+  }
+
+  private static long getUsedHeap() {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+
+  private static long getGcCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, gc.getCollectionCount());
+    }
+    return count;
+  }
+
+  private static long getGcMillis() {
+    long millis = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      millis += Math.max(0, gc.getCollectionTime());
+    }
+    return millis;
+  }
+
+  /**
+   * State of a test method that is running.
+   */
+  private static final class RunningTest {
+    private final Thread thread;
+    private final AtomicLong restCalls;
+    private final AtomicLong waitForMillis = new AtomicLong();
+    private final long startTime = System.currentTimeMillis();
+    private final long startHeap = getUsedHeap();
+    private final long startGcCount = getGcCount();
+    private final long startGcMillis = getGcMillis();
+    private volatile boolean failed;
+
+    RunningTest(Thread thread, AtomicLong restCalls) {
+      this.thread = thread;
+      this.restCalls = restCalls;
+    }
+  }
+}
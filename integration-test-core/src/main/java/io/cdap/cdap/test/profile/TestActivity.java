@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test.profile;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts what the test running on the current thread, and the threads it starts, does, for the
+ * {@link ProfilingListener}. Recording is a no-op unless the listener is enabled.
+ * This class only depends on the JDK, so that test classes loaded by isolated ClassLoaders can share it.
+ */
+public final class TestActivity {
+
+  private static final InheritableThreadLocal<AtomicLong> REST_CALLS = new InheritableThreadLocal<>();
+
+  private TestActivity() {
+  }
+
+  /**
+   * Records that a REST call was made.
+   */
+  public static void recordRestCall() {
+    AtomicLong restCalls = REST_CALLS.get();
+    if (restCalls != null) {
+      restCalls.incrementAndGet();
+    }
+  }
+
+  /**
+   * Starts counting for the test running on the current thread.
+   *
+   * @return the counter of REST calls made by the test
+   */
+  static AtomicLong startRecording() {
+    AtomicLong restCalls = new AtomicLong();
+    REST_CALLS.set(restCalls);
+    return restCalls;
+  }
+
+  /**
+   * Stops counting on the current thread.
+   */
+  static void stopRecording() {
+    REST_CALLS.remove();
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test.profile;
+
+import javax.annotation.Nullable;
+
+/**
+ * The profile of one test method, or of all test methods of a class together, as written to the report of the
+ * {@link ProfilingListener}.
+ */
+public final class TestProfile {
+
+  /**
+   * Column names of the CSV report, in the order of {@link #toCsvRow()}.
+   */
+  static final String CSV_HEADER = "className,methodName,wallMillis,waitForMillis,workMillis,restCalls," +
+    "heapDeltaBytes,gcCount,gcMillis,failed";
+
+  private final String className;
+  @Nullable
+  private final String methodName;
+  private long wallMillis;
+  private long waitForMillis;
+  private long workMillis;
+  private long restCalls;
+  private long heapDeltaBytes;
+  private long gcCount;
+  private long gcMillis;
+  private boolean failed;
+
+  TestProfile(String className, @Nullable String methodName) {
+    this.className = className;
+    this.methodName = methodName;
+  }
+
+  public String getClassName() {
+    return className;
+  }
+
+  /**
+   * @return the name of the test method, or {@code null} if this is the profile of a whole test class
+   */
+  @Nullable
+  public String getMethodName() {
+    return methodName;
+  }
+
+  /**
+   * @return the time from start to finish of the test. For a class, from the start of its first test method to the
+   *         finish of its last one
+   */
+  public long getWallMillis() {
+    return wallMillis;
+  }
+
+  /**
+   * @return the time spent in {@code Tasks.waitFor}, estimated by sampling the test's thread
+   */
+  public long getWaitForMillis() {
+    return waitForMillis;
+  }
+
+  /**
+   * @return the time not spent in {@code Tasks.waitFor}
+   */
+  public long getWorkMillis() {
+    return workMillis;
+  }
+
+  public long getRestCalls() {
+    return restCalls;
+  }
+
+  /**
+   * @return the change of the used heap of this JVM while the test ran
+   */
+  public long getHeapDeltaBytes() {
+    return heapDeltaBytes;
+  }
+
+  public long getGcCount() {
+    return gcCount;
+  }
+
+  public long getGcMillis() {
+    return gcMillis;
+  }
+
+  public boolean isFailed() {
+    return failed;
+  }
+
+  /**
+   * @return a key that is unique for each class and method
+   */
+  String getKey() {
+    return methodName == null ? className : className + "#" + methodName;
+  }
+
+  void setWallMillis(long wallMillis) {
+    this.wallMillis = wallMillis;
+    this.workMillis = Math.max(0, wallMillis - waitForMillis);
+  }
+
+  void setFailed() {
+    this.failed = true;
+  }
+
+  /**
+   * Adds resource usage to this profile.
+   */
+  void add(long waitForMillis, long restCalls, long heapDeltaBytes, long gcCount, long gcMillis) {
+    this.waitForMillis += waitForMillis;
+    this.workMillis = Math.max(0, wallMillis - this.waitForMillis);
+    this.restCalls += restCalls;
+    this.heapDeltaBytes += heapDeltaBytes;
+    this.gcCount += gcCount;
+    this.gcMillis += gcMillis;
+  }
+
+  String toCsvRow() {
+    return String.join(",", className, methodName == null ? "" : methodName, Long.toString(wallMillis),
+                       Long.toString(waitForMillis), Long.toString(workMillis),
+                       Long.toString(restCalls), Long.toString(heapDeltaBytes), Long.toString(gcCount),
+                       Long.toString(gcMillis), Boolean.toString(failed));
+  }
+}
@@ -19,21 +19,35 @@ package io.cdap.cdap.test.runner;
 import com.google.common.base.CharMatcher;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.cdap.cdap.test.NamespaceIsolation;
+import io.cdap.cdap.test.profile.ProfilingListener;
 import org.junit.runner.Description;
 import org.junit.runner.Runner;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.manipulation.NoTestsRemainException;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
 import org.junit.runner.notification.RunNotifier;
+import org.junit.runner.notification.StoppedByUserException;
 import org.junit.runners.ParentRunner;
 import org.junit.runners.model.RunnerBuilder;
+import org.junit.runners.model.Statement;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Inherited;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
 import java.nio.file.Files;
@@ -42,10 +56,24 @@ import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.regex.Pattern;
+import javax.annotation.Nullable;
 
 /**
  * Use this test {@link Runner} to automatically discover test classes to run.
@@ -53,7 +81,27 @@ import java.util.regex.Pattern;
 public class AutoSuiteRunner extends ParentRunner<Runner> {
 
   private final List<Runner> children;
+  private final Map<Runner, Class<?>> testClasses = new IdentityHashMap<>();
+  private final List<Filter> filters = new ArrayList<>();
+  private final RunnerBuilder runnerBuilder;
+  private final int workers;
+  private final TestDurations durations;
   private static final String TESTS_TO_RUN = "long.test";
+  // number of test classes to run concurrently. Each concurrent worker runs its tests in a namespace of its own.
+  private static final String PARALLEL_WORKERS = "test.parallel.workers";
+  // splits the test classes into this many shards, of which only the one with the given index (from 0) is run
+  private static final String SHARD_COUNT = "test.shard.count";
+  private static final String SHARD_INDEX = "test.shard.index";
+  // file with the duration of each test class, used to balance shards. It is only read, so that all shards plan
+  // the same split, and should therefore be the same file on every shard. Without it, classes are split by name.
+  private static final String DURATIONS_INPUT = "test.durations.input";
+  // file the durations of the test classes run are written to, to be merged into the input of later runs. The build
+  // sets it to a file in the build directory of the module, the default is only used if the tests run outside Maven.
+  private static final String DURATIONS_OUTPUT = "test.durations.output";
+  private static final String DEFAULT_DURATIONS_OUTPUT = "test-durations.json";
+  // set to true to take the test classes from the index written by TestClassIndexer rather than scanning the
+  // classpath. Scanning is the default, since an index written by another build, e.g. of an IDE, may be stale.
+  private static final String USE_CLASS_INDEX = "test.class.index";
 
   /**
    * The <code>SuitePackages</code> annotation specifies the packages to discover test classes to run.
@@ -73,10 +121,20 @@ public class AutoSuiteRunner extends ParentRunner<Runner> {
     String pattern() default ".*Test$";
   }
 
+  /**
+   * Test classes annotated with <code>Serial</code> never run concurrently with other test classes, even if parallel
+   * execution is enabled. They run in the configured namespace after all other test classes are done.
+   */
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target(ElementType.TYPE)
+  @Inherited
+  public @interface Serial {
+  }
+
   public AutoSuiteRunner(Class<?> testClass, final RunnerBuilder runnerBuilder) throws Throwable {
     super(testClass);
 
-    final List<Runner> runners = new ArrayList<>();
+    final List<Class<?>> classes = new ArrayList<>();
     final ClassLoader classLoader = getClass().getClassLoader();
     Matches matches = testClass.getAnnotation(Matches.class);
     if (matches == null) {
@@ -88,24 +146,73 @@ public class AutoSuiteRunner extends ParentRunner<Runner> {
       patternStr = createRegex(testsToRun);
     }
     Pattern pattern = Pattern.compile(patternStr);
+    boolean useIndex = Boolean.parseBoolean(System.getProperty(USE_CLASS_INDEX, "false"));
 
-    // Find all packages as specified
+    // Find all packages as specified. If enabled, the classes in each classpath entry are taken from the index
+    // generated by TestClassIndexer if it has one. They are found by scanning otherwise.
     for (String pkg : matches.packages()) {
       Enumeration<URL> resources = classLoader.getResources(pkg.replace('.', '/') + "/");
       while (resources.hasMoreElements()) {
         URL url = resources.nextElement();
+        List<String> indexedClasses;
         switch (url.getProtocol()) {
           case "file":
-            addRunnerFromPath(pkg, Paths.get(url.toURI()), pattern, runnerBuilder, runners);
+            Path path = Paths.get(url.toURI());
+            indexedClasses = useIndex
+              ? readIndex(getPackageBase(pkg, path).resolve(TestClassIndexer.INDEX_RESOURCE).toUri().toURL())
+              : null;
+            if (indexedClasses == null) {
+              addClassesFromPath(pkg, path, pattern, classes);
+            } else {
+              addClassesFromIndex(pkg, indexedClasses, pattern, classes);
+            }
           break;
           case "jar":
-            addRunnerFromJar(pkg, getJarPath(url), pattern, runnerBuilder, runners);
+            indexedClasses = useIndex ? readIndex(getJarEntryURL(url, TestClassIndexer.INDEX_RESOURCE)) : null;
+            if (indexedClasses == null) {
+              addClassesFromJar(pkg, getJarPath(url), pattern, classes);
+            } else {
+              addClassesFromIndex(pkg, indexedClasses, pattern, classes);
+            }
           break;
         }
       }
     }
 
+    String durationsInput = System.getProperty(DURATIONS_INPUT, "");
+    this.durations = TestDurations.load(durationsInput.isEmpty() ? null : Paths.get(durationsInput),
+                                        Paths.get(System.getProperty(DURATIONS_OUTPUT, DEFAULT_DURATIONS_OUTPUT)));
+    int shardCount = Integer.getInteger(SHARD_COUNT, 1);
+    if (shardCount > 1) {
+      selectShard(classes, Integer.getInteger(SHARD_INDEX, 0), shardCount);
+    }
+
+    List<Runner> runners = new ArrayList<>();
+    for (Class<?> cls : classes) {
+      Runner runner = runnerBuilder.runnerForClass(cls);
+      runners.add(runner);
+      this.testClasses.put(runner, cls);
+    }
     this.children = runners;
+    this.runnerBuilder = runnerBuilder;
+    this.workers = Integer.getInteger(PARALLEL_WORKERS, 1);
+  }
+
+  /**
+   * Removes the classes which do not belong to the given shard from the list.
+   */
+  private void selectShard(List<Class<?>> classes, int shardIndex, int shardCount) {
+    List<String> classNames = new ArrayList<>();
+    for (Class<?> cls : classes) {
+      classNames.add(cls.getName());
+    }
+    Set<String> selected = new HashSet<>(durations.selectShard(classNames, shardIndex, shardCount));
+    Iterator<Class<?>> iterator = classes.iterator();
+    while (iterator.hasNext()) {
+      if (!selected.contains(iterator.next().getName())) {
+        iterator.remove();
+      }
+    }
   }
 
   private String createRegex(String testsToRun) {
@@ -132,20 +239,219 @@ public class AutoSuiteRunner extends ParentRunner<Runner> {
 
   @Override
   protected void runChild(Runner child, RunNotifier notifier) {
+    long startTime = System.currentTimeMillis();
     child.run(notifier);
+    durations.record(testClasses.get(child).getName(), System.currentTimeMillis() - startTime);
+  }
+
+  @Override
+  public void filter(Filter filter) throws NoTestsRemainException {
+    super.filter(filter);
+    // remembered so that it can be applied to the runners that the workers create
+    filters.add(filter);
+  }
+
+  @Override
+  protected Statement childrenInvoker(final RunNotifier notifier) {
+    final Statement statement = workers <= 1 ? super.childrenInvoker(notifier) : new Statement() {
+      @Override
+      public void evaluate() throws Throwable {
+        runChildrenInParallel(notifier);
+      }
+    };
+    return new Statement() {
+      @Override
+      public void evaluate() throws Throwable {
+        try {
+          statement.evaluate();
+        } finally {
+          // durations of filtered runs don't tell how long the whole test classes take
+          if (filters.isEmpty()) {
+            durations.save();
+          }
+        }
+      }
+    };
   }
 
   /**
-   * Find test classes from the given path recursively and create test runner for them.
+   * Runs the test classes on concurrent workers. Every worker loads the test classes with its own ClassLoader and runs
+   * them in its own namespace, derived from the configured one. Test classes annotated with {@link Serial} run
+   * afterwards, one after another.
    */
-  private void addRunnerFromPath(String pkg, Path path, final Pattern pattern,
-                                 final RunnerBuilder runnerBuilder, final List<Runner> runners) throws IOException {
-    final ClassLoader classLoader = getClass().getClassLoader();
+  private void runChildrenInParallel(final RunNotifier notifier) throws InterruptedException {
+    final Queue<Class<?>> parallel = new ConcurrentLinkedQueue<>();
+    List<Runner> serial = new ArrayList<>();
+    for (Runner child : getChildren()) {
+      Class<?> cls = testClasses.get(child);
+      if (cls.isAnnotationPresent(Serial.class)) {
+        serial.add(child);
+      } else {
+        parallel.add(cls);
+      }
+    }
+
+    final List<Class<?>> isolated = new ArrayList<>(parallel);
+    // the notifiers of the test classes that are running, which have to stop once the suite's notifier is stopped
+    final Set<RunNotifier> running = ConcurrentHashMap.newKeySet();
+    final AtomicBoolean stopped = new AtomicBoolean();
+    ExecutorService executor = Executors.newFixedThreadPool(workers, new ThreadFactoryBuilder()
+      .setNameFormat("test-worker-%d").build());
+    for (int i = 0; i < workers; i++) {
+      final String namespace = NamespaceIsolation.getWorkerNamespace(i);
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          ClassLoader classLoader = createWorkerClassLoader(isolated, namespace);
+          ClassLoader oldClassLoader = Thread.currentThread().getContextClassLoader();
+          Thread.currentThread().setContextClassLoader(classLoader);
+          try {
+            Class<?> cls;
+            while (!stopped.get() && (cls = parallel.poll()) != null) {
+              RecordingListener recorder = new RecordingListener();
+              RunNotifier classNotifier = new RunNotifier();
+              classNotifier.addListener(recorder);
+              // the recorded events are passed on after the class is done, so it is profiled while it runs
+              classNotifier.addListener(ProfilingListener.getWorkerListener());
+              running.add(classNotifier);
+              // checked after adding, so that either this or the stopping worker stops the notifier
+              if (stopped.get()) {
+                classNotifier.pleaseStop();
+              }
+              try {
+                runIsolated(classLoader, cls, classNotifier);
+              } catch (StoppedByUserException e) {
+                // the suite was stopped while the class ran, what it did until then is still reported
+              } finally {
+                running.remove(classNotifier);
+              }
+              // the events of one test class are passed on together, since reporters don't expect them to be
+              // interleaved with those of other test classes
+              synchronized (notifier) {
+                try {
+                  recorder.replay(notifier);
+                } catch (StoppedByUserException e) {
+                  stopped.set(true);
+                  for (RunNotifier runningNotifier : running) {
+                    runningNotifier.pleaseStop();
+                  }
+                }
+              }
+            }
+          } finally {
+            Thread.currentThread().setContextClassLoader(oldClassLoader);
+          }
+        }
+      });
+    }
+    executor.shutdown();
+    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    if (stopped.get()) {
+      throw new StoppedByUserException();
+    }
+    // only left if every worker failed, which must not go unnoticed
+    for (Class<?> cls : parallel) {
+      notifier.fireTestFailure(new Failure(Description.createSuiteDescription(cls),
+                                           new IllegalStateException("No worker left to run " + cls.getName())));
+    }
+
+    for (Runner child : serial) {
+      if (applyFilters(child)) {
+        runChild(child, notifier);
+      }
+    }
+  }
+
+  private ClassLoader createWorkerClassLoader(List<Class<?>> testClasses, String namespace) {
+    ClassLoader classLoader = new IsolatedTestClassLoader(testClasses, getClass().getClassLoader());
+    try {
+      // has to happen before any test class is loaded, since they determine their namespace when initialized
+      classLoader.loadClass(NamespaceIsolation.class.getName())
+        .getMethod("setNamespace", String.class).invoke(null, namespace);
+    } catch (Exception e) {
+      throw Throwables.propagate(e);
+    }
+    return classLoader;
+  }
+
+  private void runIsolated(ClassLoader classLoader, Class<?> cls, RunNotifier notifier) {
+    Runner runner;
+    try {
+      runner = runnerBuilder.runnerForClass(classLoader.loadClass(cls.getName()));
+    } catch (Throwable t) {
+      notifier.fireTestFailure(new Failure(Description.createSuiteDescription(cls), t));
+      return;
+    }
+    if (runner != null && applyFilters(runner)) {
+      long startTime = System.currentTimeMillis();
+      runner.run(notifier);
+      durations.record(cls.getName(), System.currentTimeMillis() - startTime);
+    }
+  }
 
-    // Find the file path that representing the root of where the given package path starts.
-    // E.g. pkg == "io.cdap.cdap", path == "/root/io/cdap/cdap", then pkgBase will be "/root"
-    final Path pkgBase = path.getRoot().resolve(
-      path.subpath(0, path.getNameCount() - CharMatcher.is('.').countIn(pkg) - 1));
+  // applies the filters that were applied to this suite, returns false if no test is left to run
+  private boolean applyFilters(Runner runner) {
+    try {
+      for (Filter filter : filters) {
+        filter.apply(runner);
+      }
+      return true;
+    } catch (NoTestsRemainException e) {
+      return false;
+    }
+  }
+
+  /**
+   * A {@link RunListener} which records the events of a test class run by a worker, so that they can be passed on
+   * to the suite's {@link RunNotifier} once the test class is done.
+   */
+  private static final class RecordingListener extends RunListener {
+    private final List<Consumer<RunNotifier>> events = new ArrayList<>();
+
+    @Override
+    public void testStarted(Description description) {
+      events.add(notifier -> notifier.fireTestStarted(description));
+    }
+
+    @Override
+    public void testFinished(Description description) {
+      events.add(notifier -> notifier.fireTestFinished(description));
+    }
+
+    @Override
+    public void testFailure(Failure failure) {
+      events.add(notifier -> notifier.fireTestFailure(failure));
+    }
+
+    @Override
+    public void testAssumptionFailure(Failure failure) {
+      events.add(notifier -> notifier.fireTestAssumptionFailed(failure));
+    }
+
+    @Override
+    public void testIgnored(Description description) {
+      events.add(notifier -> notifier.fireTestIgnored(description));
+    }
+
+    /**
+     * Fires the recorded events on the given notifier.
+     *
+     * @throws StoppedByUserException if the notifier was asked to stop
+     */
+    void replay(RunNotifier notifier) {
+      for (Consumer<RunNotifier> event : events) {
+        event.accept(notifier);
+      }
+    }
+  }
+
+  /**
+   * Find test classes from the given path recursively.
+   */
+  private void addClassesFromPath(String pkg, Path path, final Pattern pattern,
+                                  final List<Class<?>> testClasses) throws IOException {
+    final ClassLoader classLoader = getClass().getClassLoader();
+    final Path pkgBase = getPackageBase(pkg, path);
 
     // Walk the package directory recursively.
     Files.walkFileTree(path, new FileVisitor<Path>() {
@@ -166,7 +472,7 @@ public class AutoSuiteRunner extends ParentRunner<Runner> {
         }
 
         try {
-          runners.add(runnerBuilder.runnerForClass(classLoader.loadClass(className)));
+          testClasses.add(classLoader.loadClass(className));
         } catch (Throwable e) {
           throw Throwables.propagate(e);
         }
@@ -186,10 +492,54 @@ public class AutoSuiteRunner extends ParentRunner<Runner> {
   }
 
   /**
-   * Find test classes from the given path recursively and create test runner for them.
+   * Returns the file path representing the root of where the given package path starts.
+   * E.g. pkg == "io.cdap.cdap", path == "/root/io/cdap/cdap", then the result will be "/root"
+   */
+  private Path getPackageBase(String pkg, Path path) {
+    return path.getRoot().resolve(path.subpath(0, path.getNameCount() - CharMatcher.is('.').countIn(pkg) - 1));
+  }
+
+  /**
+   * Reads the class names from the test class index at the given URL.
+   *
+   * @return the class names, or {@code null} if there is no index
+   */
+  @Nullable
+  private List<String> readIndex(URL indexURL) throws IOException {
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(indexURL.openStream(),
+                                                                          StandardCharsets.UTF_8))) {
+      List<String> classNames = new ArrayList<>();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (!line.isEmpty()) {
+          classNames.add(line);
+        }
+      }
+      return classNames;
+    } catch (FileNotFoundException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Find test classes from the class names listed in a test class index.
+   */
+  private void addClassesFromIndex(String pkg, List<String> classNames, Pattern pattern,
+                                   List<Class<?>> testClasses) throws ClassNotFoundException {
+    ClassLoader classLoader = getClass().getClassLoader();
+    String pkgPrefix = pkg + '.';
+    for (String className : classNames) {
+      if (className.startsWith(pkgPrefix) && pattern.matcher(className).matches()) {
+        testClasses.add(classLoader.loadClass(className));
+      }
+    }
+  }
+
+  /**
+   * Find test classes from the given JAR.
    */
-  private void addRunnerFromJar(String pkg, Path jarPath, final Pattern pattern,
-                                RunnerBuilder runnerBuilder, List<Runner> runners) throws Throwable {
+  private void addClassesFromJar(String pkg, Path jarPath, final Pattern pattern,
+                                 List<Class<?>> testClasses) throws Throwable {
     ClassLoader classLoader = getClass().getClassLoader();
     // Visit every entries in the JAR and look for class files that matches the given package and pattern
     try (JarFile jarFile = new JarFile(jarPath.toFile())) {
@@ -205,7 +555,7 @@ public class AutoSuiteRunner extends ParentRunner<Runner> {
         if (!pattern.matcher(className).matches()) {
           continue;
         }
-        runners.add(runnerBuilder.runnerForClass(classLoader.loadClass(className)));
+        testClasses.add(classLoader.loadClass(className));
       }
     }
   }
@@ -219,4 +569,12 @@ public class AutoSuiteRunner extends ParentRunner<Runner> {
     String path = url.getFile();
     return Paths.get(URI.create(path.substring(0, path.indexOf("!/"))));
   }
+
+  /**
+   * Returns the URL of an entry in the JAR represented by the given URL that points to another entry inside the JAR.
+   */
+  private URL getJarEntryURL(URL url, String entry) throws MalformedURLException {
+    String spec = url.toString();
+    return new URL(spec.substring(0, spec.indexOf("!/") + 2) + entry);
+  }
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test.runner;
+
+import io.cdap.cdap.test.NamespaceIsolation;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.CodeSource;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A child-first ClassLoader over the classpath entries that hold the test classes and the base classes they extend,
+ * so that these classes and their static state are loaded once per {@link AutoSuiteRunner} worker. All other
+ * classes, such as those of CDAP, Guava or Hadoop, are shared with the parent, rather than loaded and initialized
+ * again by every worker, since tests don't keep state in them. JUnit and logging classes are always shared, so that
+ * runners and notifications can be passed between the worker and the suite. So are the classes of the
+ * {@code io.cdap.cdap.test.shared} package, which hold state that is shared by all workers.
+ */
+final class IsolatedTestClassLoader extends URLClassLoader {
+
+  private static final String[] PARENT_PACKAGES = {
+    "java.", "javax.", "sun.", "com.sun.", "org.junit.", "junit.", "org.hamcrest.",
+    "org.slf4j.", "ch.qos.logback.", "org.apache.log4j.",
+    // so that tests report to the ProfilingListener registered with the suite
+    "io.cdap.cdap.test.profile.",
+    // for state that tests running in different workers share
+    "io.cdap.cdap.test.shared."
+  };
+
+  static {
+    ClassLoader.registerAsParallelCapable();
+  }
+
+  IsolatedTestClassLoader(Collection<Class<?>> testClasses, ClassLoader parent) {
+    super(getIsolatedClassPath(testClasses), parent);
+  }
+
+  @Override
+  protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+    for (String pkg : PARENT_PACKAGES) {
+      if (name.startsWith(pkg)) {
+        return super.loadClass(name, resolve);
+      }
+    }
+    synchronized (getClassLoadingLock(name)) {
+      Class<?> cls = findLoadedClass(name);
+      if (cls == null) {
+        try {
+          cls = findClass(name);
+        } catch (ClassNotFoundException e) {
+          cls = getParent().loadClass(name);
+        }
+      }
+      if (resolve) {
+        resolveClass(cls);
+      }
+      return cls;
+    }
+  }
+
+  /**
+   * Returns the classpath entries of the given test classes and of their base classes. The entry of
+   * {@link NamespaceIsolation} is always included, since every worker needs a copy of it to hold its namespace.
+   */
+  private static URL[] getIsolatedClassPath(Collection<Class<?>> testClasses) {
+    // keyed by the external form, since URL.equals may resolve host names
+    Map<String, URL> urls = new LinkedHashMap<>();
+    addLocation(NamespaceIsolation.class, urls);
+    for (Class<?> testClass : testClasses) {
+      for (Class<?> cls = testClass; cls != null && cls != Object.class; cls = cls.getSuperclass()) {
+        addLocation(cls, urls);
+      }
+    }
+    return urls.values().toArray(new URL[urls.size()]);
+  }
+
+  private static void addLocation(Class<?> cls, Map<String, URL> urls) {
+    CodeSource codeSource = cls.getProtectionDomain().getCodeSource();
+    if (codeSource != null && codeSource.getLocation() != null) {
+      urls.put(codeSource.getLocation().toExternalForm(), codeSource.getLocation());
+    }
+  }
+}
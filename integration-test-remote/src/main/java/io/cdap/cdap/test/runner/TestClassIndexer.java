@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test.runner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * An annotation processor which writes the names of all classes in the output directory of a compilation to
+ * {@link #INDEX_RESOURCE}, so that {@link AutoSuiteRunner} can find test classes without walking the classpath if
+ * asked to. The index lists the classes being compiled as well as those compiled before, e.g. if only some sources
+ * were compiled again, so that it names the same classes that scanning the output directory finds. It runs as part
+ * of every compilation that has this module on its classpath.
+ */
+@SupportedAnnotationTypes("*")
+public class TestClassIndexer extends AbstractProcessor {
+
+  /**
+   * Path of the index resource, relative to the root of the compiled classes.
+   */
+  static final String INDEX_RESOURCE = "META-INF/io.cdap.cdap.test.runner.classes";
+
+  private final Set<String> classNames = new TreeSet<>();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    for (Element element : roundEnv.getRootElements()) {
+      addClasses(element);
+    }
+    if (roundEnv.processingOver() && !classNames.isEmpty()) {
+      writeIndex();
+    }
+    // never claims any annotation, so that other processors still see them
+    return false;
+  }
+
+  /**
+   * Adds the binary names of the given class and of the classes nested in it, which are the names of their
+   * class files.
+   */
+  private void addClasses(Element element) {
+    if (!element.getKind().isClass() && !element.getKind().isInterface()) {
+      return;
+    }
+    classNames.add(processingEnv.getElementUtils().getBinaryName((TypeElement) element).toString());
+    for (Element enclosed : element.getEnclosedElements()) {
+      addClasses(enclosed);
+    }
+  }
+
+  private void writeIndex() {
+    try {
+      FileObject index = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+      if (!"file".equals(index.toUri().getScheme())) {
+        // the classes compiled before can't be listed, and without the index AutoSuiteRunner scans for test classes
+        return;
+      }
+      Path root = Paths.get(index.toUri()).getParent().getParent();
+      if (Files.isDirectory(root)) {
+        try (Stream<Path> files = Files.walk(root)) {
+          files.map(root::relativize).map(Path::toString).filter(name -> name.endsWith(".class"))
+            .map(name -> name.substring(0, name.length() - ".class".length()).replace(File.separatorChar, '.'))
+            .forEach(classNames::add);
+        }
+      }
+      try (Writer writer = index.openWriter()) {
+        for (String className : classNames) {
+          writer.write(className);
+          writer.write('\n');
+        }
+      }
+    } catch (IOException e) {
+      // without the index, AutoSuiteRunner falls back to scanning for test classes
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                                               "Failed to write test class index: " + e.getMessage());
+    }
+  }
+}
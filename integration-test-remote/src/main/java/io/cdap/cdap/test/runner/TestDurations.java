@@ -0,0 +1,170 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test.runner;
+
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+
+/**
+ * How long each test class takes to run, persisted as a JSON map from class name to milliseconds. The history read
+ * from the input is used to split test classes into shards that take about the same time. It is never changed by a
+ * run, so that all shards plan the same split from the same input. The durations measured in a run are written to a
+ * separate output instead, which only has the classes of that run, and can be merged with the outputs of the other
+ * shards into the input of later runs.
+ */
+final class TestDurations {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TestDurations.class);
+  private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+  private static final Type MAP_TYPE = new TypeToken<Map<String, Long>>() { }.getType();
+
+  private final Map<String, Long> history;
+  private final Path output;
+  private final ConcurrentMap<String, Long> recorded = new ConcurrentHashMap<>();
+
+  private TestDurations(Map<String, Long> history, Path output) {
+    this.history = Collections.unmodifiableMap(new HashMap<>(history));
+    this.output = output;
+  }
+
+  /**
+   * Loads the history from the given input file.
+   *
+   * @param input the file to read the history from, or {@code null} to start without history
+   * @param output the file to write the durations measured in this run to
+   * @throws IllegalArgumentException if the input file can't be read. Shards which can't read it would plan a
+   *   different split than the others, which would skip some test classes and run others twice.
+   */
+  static TestDurations load(@Nullable Path input, Path output) {
+    Map<String, Long> history = null;
+    if (input != null) {
+      try (Reader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+        history = GSON.fromJson(reader, MAP_TYPE);
+      } catch (IOException | JsonParseException e) {
+        throw new IllegalArgumentException("Failed to read test durations from " + input, e);
+      }
+    }
+    return new TestDurations(history == null ? Collections.<String, Long>emptyMap() : history, output);
+  }
+
+  /**
+   * Records how long a test class took in this run.
+   */
+  void record(String className, long millis) {
+    recorded.put(className, millis);
+  }
+
+  /**
+   * Writes the durations recorded in this run to the output file. The history is not part of it, since the classes
+   * of other shards are better known to the shards that ran them.
+   */
+  void save() {
+    if (recorded.isEmpty()) {
+      return;
+    }
+    try {
+      Path parent = output.toAbsolutePath().getParent();
+      Files.createDirectories(parent);
+      Path tmp = Files.createTempFile(parent, output.getFileName().toString(), ".tmp");
+      try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+        GSON.toJson(new TreeMap<>(recorded), MAP_TYPE, writer);
+      }
+      Files.move(tmp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      LOG.warn("Failed to write test durations to {}", output, e);
+    }
+  }
+
+  /**
+   * Selects the classes of one shard. Classes are assigned longest first, each to the shard with the smallest total
+   * duration so far. Classes without history are assumed to take the median known duration. The assignment only
+   * depends on the class names and the history, so every shard computes the same split as long as all of them read
+   * the same input.
+   *
+   * @param classNames names of all test classes
+   * @param shardIndex the index of the shard to select, starting from 0
+   * @param shardCount the total number of shards
+   * @return the names of the classes in the selected shard
+   */
+  List<String> selectShard(List<String> classNames, int shardIndex, int shardCount) {
+    if (shardIndex < 0 || shardIndex >= shardCount) {
+      throw new IllegalArgumentException(String.format("Shard index %d is not within [0, %d)", shardIndex,
+                                                       shardCount));
+    }
+    final Map<String, Long> estimates = new TreeMap<>();
+    long fallback = getMedianDuration();
+    for (String className : classNames) {
+      Long duration = history.get(className);
+      estimates.put(className, duration == null ? fallback : duration);
+    }
+
+    List<String> sorted = new ArrayList<>(estimates.keySet());
+    sorted.sort(Comparator.comparing((String name) -> estimates.get(name)).reversed()
+                  .thenComparing(Comparator.naturalOrder()));
+
+    long[] totals = new long[shardCount];
+    List<String> selected = new ArrayList<>();
+    for (String className : sorted) {
+      int shard = 0;
+      for (int i = 1; i < shardCount; i++) {
+        if (totals[i] < totals[shard]) {
+          shard = i;
+        }
+      }
+      totals[shard] += estimates.get(className);
+      if (shard == shardIndex) {
+        selected.add(className);
+      }
+    }
+    LOG.info("Selected {} of {} test classes for shard {} of {}, estimated to take {} ms",
+             selected.size(), classNames.size(), shardIndex, shardCount, totals[shardIndex]);
+    return selected;
+  }
+
+  // duration assumed for classes without history. Any positive value works if there is no history at all.
+  private long getMedianDuration() {
+    if (history.isEmpty()) {
+      return 1L;
+    }
+    List<Long> durations = new ArrayList<>(history.values());
+    Collections.sort(durations);
+    return Math.max(1L, durations.get(durations.size() / 2));
+  }
+}
@@ -19,6 +19,7 @@ package io.cdap.cdap.app.etl;
 import com.google.common.base.Joiner;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSetMultimap;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -33,24 +34,24 @@ import io.cdap.cdap.client.ApplicationClient;
 import io.cdap.cdap.client.ArtifactClient;
 import io.cdap.cdap.client.DatasetClient;
 import io.cdap.cdap.client.config.ConnectionConfig;
-import io.cdap.cdap.common.ArtifactNotFoundException;
 import io.cdap.cdap.common.UnauthenticatedException;
-import io.cdap.cdap.common.utils.Tasks;
 import io.cdap.cdap.etl.api.batch.BatchAggregator;
 import io.cdap.cdap.etl.api.batch.BatchSink;
 import io.cdap.cdap.etl.proto.v2.DataStreamsConfig;
 import io.cdap.cdap.etl.proto.v2.ETLBatchConfig;
 import io.cdap.cdap.proto.ConfigEntry;
 import io.cdap.cdap.proto.artifact.AppRequest;
-import io.cdap.cdap.proto.artifact.PluginSummary;
-import io.cdap.cdap.proto.id.ArtifactId;
+import io.cdap.cdap.remote.dataset.DatasetProxyApp;
 import io.cdap.cdap.test.AudiTestBase;
 import io.cdap.cdap.test.DataSetManager;
+import io.cdap.cdap.test.WarmUpSpec;
 import io.cdap.common.http.HttpMethod;
 import io.cdap.common.http.HttpRequest;
 import io.cdap.common.http.HttpResponse;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.rules.TestRule;
 
 import java.io.IOException;
 import java.net.URL;
@@ -58,9 +59,6 @@ import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import javax.annotation.Nullable;
 
 /**
@@ -75,47 +73,28 @@ public abstract class ETLTestBase extends AudiTestBase {
     Schema.Field.of("num", Schema.of(Schema.Type.INT)),
     Schema.Field.of("price", Schema.of(Schema.Type.DOUBLE)));
 
+  // waits for the plugins used by pipelines, and builds the dataset proxy used to ingest data, before the first test
+  @ClassRule
+  public static final TestRule WARM_UP = warmUpRule(
+    WarmUpSpec.builder()
+      .addApplication(DatasetProxyApp.class)
+      .addSystemArtifact("cdap-data-pipeline", ImmutableSetMultimap.of(BatchAggregator.PLUGIN_TYPE, "GroupByAggregate",
+                                                                       BatchSink.PLUGIN_TYPE, "File"))
+      .addSystemArtifact("cdap-data-streams", ImmutableSetMultimap.of(BatchAggregator.PLUGIN_TYPE, "GroupByAggregate"))
+      .build());
+
   protected ApplicationClient appClient;
   protected DatasetClient datasetClient;
   protected ArtifactClient artifactClient;
   protected String version;
 
   @Before
-  public void setup() throws InterruptedException, ExecutionException, TimeoutException {
+  public void setup() {
     appClient = getApplicationClient();
     datasetClient = getDatasetClient();
     artifactClient = new ArtifactClient(getClientConfig(), getRestClient());
-
+    // the plugins of cdap-data-pipeline and cdap-data-streams are available already, since the class rule waited
     version = getVersion();
-    final ArtifactId datapipelineId = TEST_NAMESPACE.artifact("cdap-data-pipeline", version);
-    final ArtifactId datastreamsId = TEST_NAMESPACE.artifact("cdap-data-streams", version);
-
-    // wait until we see extensions for cdap-data-pipeline and cdap-data-streams
-    Tasks.waitFor(true, () -> {
-      try {
-        // cdap-data-pipeline and cdap-data-streams are parent artifacts
-        List<PluginSummary> plugins =
-          artifactClient.getPluginSummaries(datapipelineId, BatchAggregator.PLUGIN_TYPE, ArtifactScope.SYSTEM);
-        if (plugins.stream().noneMatch(pluginSummary -> "GroupByAggregate".equals(pluginSummary.getName()))) {
-          return false;
-        }
-
-        plugins = artifactClient.getPluginSummaries(datapipelineId, BatchSink.PLUGIN_TYPE, ArtifactScope.SYSTEM);
-        if (plugins.stream().noneMatch(pluginSummary -> "File".equals(pluginSummary.getName()))) {
-          return false;
-        }
-
-        plugins = artifactClient.getPluginSummaries(datastreamsId, BatchAggregator.PLUGIN_TYPE, ArtifactScope.SYSTEM);
-        if (plugins.stream().noneMatch(pluginSummary -> "GroupByAggregate".equals(pluginSummary.getName()))) {
-          return false;
-        }
-
-        return true;
-      } catch (ArtifactNotFoundException e) {
-        // happens if cdap-data-pipeline or cdap-data-streams were not added yet
-        return false;
-      }
-    }, 5, TimeUnit.MINUTES, 3, TimeUnit.SECONDS);
   }
 
   protected AppRequest<DataStreamsConfig> getStreamingAppRequest(DataStreamsConfig config) {
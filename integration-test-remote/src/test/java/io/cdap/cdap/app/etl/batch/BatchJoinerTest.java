@@ -39,7 +39,6 @@ import io.cdap.cdap.etl.proto.v2.ETLStage;
 import io.cdap.cdap.proto.ProgramRunStatus;
 import io.cdap.cdap.proto.artifact.AppRequest;
 import io.cdap.cdap.proto.id.ApplicationId;
-import io.cdap.cdap.remote.dataset.AbstractDatasetApp;
 import io.cdap.cdap.security.spi.authorization.UnauthorizedException;
 import io.cdap.cdap.test.ApplicationManager;
 import io.cdap.cdap.test.DataSetManager;
@@ -308,7 +307,6 @@ public class BatchJoinerTest extends ETLTestBase {
     putFilmCategory(filmCategoryTable, 2, "1", "matrix", "thriller");
     putFilmCategory(filmCategoryTable, 3, "2", "equilibrium", "action");
     filmCategoryManager.flush();
-    stopServiceForDataset(filmCategoryDatasetName);
   }
 
   private void putFilmCategory(Table table, int id, String filmId, String filmName, String categoryName) {
@@ -331,7 +329,6 @@ public class BatchJoinerTest extends ETLTestBase {
     putFilmActor(filmActorTable, 3, "2", "equilibrium", "cathie");
     putFilmActor(filmActorTable, 4, "3", "avatar", "samuel");
     filmActorManager.flush();
-    stopServiceForDataset(filmActorDatasetName);
   }
 
   private void putFilmActor(Table table, int id, String filmId, String filmName, String actorName) {
@@ -355,7 +352,6 @@ public class BatchJoinerTest extends ETLTestBase {
     putFilm(filmTable, 3, "3", "avatar");
     putFilm(filmTable, 4, "4", "humtum");
     filmManager.flush();
-    stopServiceForDataset(filmDatasetName);
   }
 
   private void putFilm(Table table, int id, String filmId, String filmName) {
@@ -364,11 +360,4 @@ public class BatchJoinerTest extends ETLTestBase {
     put.add("film_name", filmName);
     table.put(put);
   }
-
-  // once we no longer need a service to interact with a dataset, can stop it to reduce resource usage
-  private void stopServiceForDataset(String datasetName) throws Exception {
-    getApplicationManager(TEST_NAMESPACE.app(datasetName))
-      .getServiceManager(AbstractDatasetApp.DatasetService.class.getSimpleName())
-      .stop();
-  }
 }
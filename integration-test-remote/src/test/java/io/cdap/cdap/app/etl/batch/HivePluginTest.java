@@ -41,6 +41,7 @@ import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.test.ApplicationManager;
 import io.cdap.cdap.test.ServiceManager;
 import io.cdap.cdap.test.WorkflowManager;
+import io.cdap.cdap.test.runner.AutoSuiteRunner;
 import io.cdap.cdap.test.suite.category.SDKIncompatible;
 import io.cdap.common.http.HttpMethod;
 import io.cdap.common.http.HttpRequest;
@@ -64,6 +65,8 @@ import java.util.concurrent.TimeUnit;
   // Do not run the tests on SDK because there no Hive server available for the HivePlugin to connect to.
   SDKIncompatible.class
 })
+// the plugins are installed from the market and import through the Hive server, which all tests share
+@AutoSuiteRunner.Serial
 public class HivePluginTest extends ETLTestBase {
 
   private static final List<String> DATA_LIST =
@@ -68,6 +68,7 @@ import java.time.LocalTime;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
@@ -740,11 +741,8 @@ public class GCSTest extends DataprocETLTestBase {
       pipelineConfig.addStage(sink).addConnection(source.getName(), sink.getName());
     }
 
-    AppRequest<ETLBatchConfig> appRequest = getBatchAppRequestV2(pipelineConfig.build());
-    ApplicationId appId = TEST_NAMESPACE.app("GCSFormatSinks");
-    ApplicationManager appManager = deployApplication(appId, appRequest);
-
-    startWorkFlow(appManager, ProgramRunStatus.COMPLETED);
+    ApplicationId sinksAppId = TEST_NAMESPACE.app("GCSFormatSinks");
+    AppRequest<ETLBatchConfig> sinksAppRequest = getBatchAppRequestV2(pipelineConfig.build());
 
     /*
       The second pipeline reads from each of those formats and writes to GCS.
@@ -769,10 +767,16 @@ public class GCSTest extends DataprocETLTestBase {
       pipelineConfig.addStage(source).addConnection(source.getName(), sink.getName());
     }
 
-    appRequest = getBatchAppRequestV2(pipelineConfig.build());
-    appId = TEST_NAMESPACE.app("GCSFormatSources");
-    appManager = deployApplication(appId, appRequest);
-    startWorkFlow(appManager, ProgramRunStatus.COMPLETED);
+    ApplicationId sourcesAppId = TEST_NAMESPACE.app("GCSFormatSources");
+    AppRequest<ETLBatchConfig> sourcesAppRequest = getBatchAppRequestV2(pipelineConfig.build());
+
+    // the second pipeline only reads the output of the first once it runs, so both are deployed together
+    Map<ApplicationId, ApplicationManager> appManagers =
+      deployApplications(TEST_NAMESPACE, Collections.emptyList(),
+                         ImmutableMap.<ApplicationId, AppRequest<?>>of(sinksAppId, sinksAppRequest,
+                                                                       sourcesAppId, sourcesAppRequest));
+    startWorkFlow(appManagers.get(sinksAppId), ProgramRunStatus.COMPLETED);
+    startWorkFlow(appManagers.get(sourcesAppId), ProgramRunStatus.COMPLETED);
 
     Map<String, Integer> lineCounts = new HashMap<>();
     List<String> results = getResultBlobsContent(bucket, "output");
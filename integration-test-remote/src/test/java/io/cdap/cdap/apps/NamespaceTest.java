@@ -24,6 +24,7 @@ import io.cdap.cdap.common.NamespaceNotFoundException;
 import io.cdap.cdap.proto.NamespaceMeta;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.test.AudiTestBase;
+import io.cdap.cdap.test.runner.AutoSuiteRunner;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -33,6 +34,8 @@ import javax.annotation.Nullable;
 /**
  * Tests functionality of namespaces (create, get, list, delete, etc)
  */
+// asserts the exact set of namespaces, which changes while other test classes run in namespaces of their own
+@AutoSuiteRunner.Serial
 public class NamespaceTest extends AudiTestBase {
   private static final NamespaceId NS1 = new NamespaceId("ns1");
   private static final NamespaceId NS2 = new NamespaceId("ns2");
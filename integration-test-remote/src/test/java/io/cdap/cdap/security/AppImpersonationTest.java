@@ -35,6 +35,7 @@ import io.cdap.cdap.test.ApplicationManager;
 import io.cdap.cdap.test.AudiTestBase;
 import io.cdap.cdap.test.WorkerManager;
 import io.cdap.cdap.test.WorkflowManager;
+import io.cdap.cdap.test.runner.AutoSuiteRunner;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -44,6 +45,8 @@ import java.util.concurrent.TimeUnit;
 /**
  * Tests basic impersonation for different users across the same namespace.
  */
+// creates the fixed imp_ns namespace, and its Hive database, which concurrent runs would share
+@AutoSuiteRunner.Serial
 public class AppImpersonationTest extends AudiTestBase {
   private static final NamespaceId NAMESPACE_ID = new NamespaceId("imp_ns");
   private static final String ALICE = "alice";
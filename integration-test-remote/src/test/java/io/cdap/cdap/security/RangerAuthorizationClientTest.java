@@ -21,6 +21,7 @@ import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.security.Action;
 import io.cdap.cdap.proto.security.Authorizable;
 import io.cdap.cdap.proto.security.Principal;
+import io.cdap.cdap.test.runner.AutoSuiteRunner;
 import org.apache.ranger.plugin.model.RangerPolicy;
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -34,6 +35,8 @@ import java.util.List;
  * Note: This test does not run in any ITN. It is just a unit test written for {@link RangerAuthorizationClient}
  * testing. To run it you should set -DinstanceUri to the instance URI of the cluster.
  */
+// grants and revokes privileges on the default namespace, which all tests share
+@AutoSuiteRunner.Serial
 public class RangerAuthorizationClientTest {
   private static RangerAuthorizationClient rangerAuthorizationClient;
 
@@ -0,0 +1,162 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.test.runner;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import io.cdap.cdap.test.Tasks;
+import io.cdap.cdap.test.profile.ProfilingListener;
+import io.cdap.cdap.test.profile.TestActivity;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests that the {@link ProfilingListener} measures test classes which {@link AutoSuiteRunner} runs on concurrent
+ * workers.
+ */
+public class AutoSuiteRunnerProfilingTest {
+
+  private static final long WORK_MILLIS = 200;
+  private static final long WAIT_MILLIS = 300;
+  private static final int REST_CALLS = 3;
+
+  @Rule
+  public final TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Test
+  public void testParallelSuite() throws Exception {
+    File profileDir = tmpFolder.newFolder();
+    Map<String, String> properties = new HashMap<>();
+    properties.put("test.parallel.workers", "2");
+    properties.put("test.profile.dir", profileDir.getAbsolutePath());
+    properties.put("test.durations.output", new File(tmpFolder.getRoot(), "test-durations.json").getAbsolutePath());
+
+    Map<String, String> oldProperties = new HashMap<>();
+    for (Map.Entry<String, String> entry : properties.entrySet()) {
+      oldProperties.put(entry.getKey(), System.setProperty(entry.getKey(), entry.getValue()));
+    }
+    Result result;
+    try {
+      JUnitCore junit = new JUnitCore();
+      junit.addListener(new ProfilingListener());
+      result = junit.run(ParallelSuite.class);
+    } finally {
+      for (Map.Entry<String, String> entry : oldProperties.entrySet()) {
+        if (entry.getValue() == null) {
+          System.clearProperty(entry.getKey());
+        } else {
+          System.setProperty(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+    Assert.assertTrue(result.getFailures().toString(), result.wasSuccessful());
+    Assert.assertEquals(4, result.getRunCount());
+
+    List<Map<String, Object>> profiles;
+    try (Reader reader = Files.newBufferedReader(new File(profileDir, "test-profile.json").toPath(),
+                                                 StandardCharsets.UTF_8)) {
+      profiles = new Gson().fromJson(reader, new TypeToken<List<Map<String, Object>>>() { }.getType());
+    }
+    // two methods and the class itself for each of the fixtures
+    Assert.assertEquals(6, profiles.size());
+    for (Map<String, Object> profile : profiles) {
+      int methods = profile.get("methodName") == null ? 2 : 1;
+      String name = profile.get("className") + "#" + profile.get("methodName");
+      Assert.assertTrue(name, getLong(profile, "wallMillis") >= methods * (WORK_MILLIS + WAIT_MILLIS));
+      Assert.assertTrue(name, getLong(profile, "waitForMillis") > 0);
+      // replayed events must not be counted again
+      Assert.assertEquals(name, methods * REST_CALLS, getLong(profile, "restCalls"));
+    }
+  }
+
+  private static long getLong(Map<String, Object> profile, String field) {
+    return ((Number) profile.get(field)).longValue();
+  }
+
+  /**
+   * Works, calls the REST API and waits for a condition, like the integration tests do.
+   */
+  private static void simulateTest() throws Exception {
+    for (int i = 0; i < REST_CALLS; i++) {
+      TestActivity.recordRestCall();
+    }
+    TimeUnit.MILLISECONDS.sleep(WORK_MILLIS);
+    final long waitStart = System.currentTimeMillis();
+    Tasks.waitFor(true, new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return System.currentTimeMillis() - waitStart >= WAIT_MILLIS;
+      }
+    }, 10, TimeUnit.SECONDS, 10, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Runs the fixtures on concurrent workers.
+   */
+  @RunWith(AutoSuiteRunner.class)
+  @AutoSuiteRunner.Matches(packages = "io.cdap.cdap.test.runner", pattern = ".*ProfilingTest\\$.*Fixture$")
+  public static class ParallelSuite {
+  }
+
+  /**
+   * A test class of the {@link ParallelSuite}.
+   */
+  public static class FirstFixture {
+
+    @Test
+    public void testFirst() throws Exception {
+      simulateTest();
+    }
+
+    @Test
+    public void testSecond() throws Exception {
+      simulateTest();
+    }
+  }
+
+  /**
+   * A test class of the {@link ParallelSuite}.
+   */
+  public static class SecondFixture {
+
+    @Test
+    public void testFirst() throws Exception {
+      simulateTest();
+    }
+
+    @Test
+    public void testSecond() throws Exception {
+      simulateTest();
+    }
+  }
+}
@@ -0,0 +1,366 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test.standalone;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.base.Throwables;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import io.cdap.cdap.StandaloneTester;
+import io.cdap.cdap.common.app.MainClassLoader;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.lang.ClassLoaders;
+import io.cdap.cdap.common.utils.Tasks;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * A CDAP standalone that is booted once per JVM and shared by the suites that run in it.
+ *
+ * The standalone keeps its data in a fixed directory. After the first boot with a given set of CDAP jars, once all
+ * system services are up, the standalone is stopped and its data directory copied to a snapshot. Later boots, also
+ * in other JVMs, start from a copy of that snapshot, which skips the initialization done on a fresh data directory.
+ * The snapshot is restored to the same path it was taken from, because the data refers to files by absolute path.
+ * It is kept outside of the build directory by default, so that it survives a clean build.
+ *
+ * The following system properties configure it:
+ * <ul>
+ *   <li>{@code standalone.data.dir}: directory for the standalone's data, {@code target/standalone-data} by
+ *   default</li>
+ *   <li>{@code standalone.snapshot.dir}: directory to keep the snapshot in. By default a directory under
+ *   {@code ~/.cdap-integration-test/standalone-snapshot}, named after a hash of the data directory, so that
+ *   checkouts in different places don't replace each other's snapshot</li>
+ *   <li>{@code standalone.snapshot}: set to false to always boot from an empty data directory</li>
+ * </ul>
+ */
+final class StandaloneInstance {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StandaloneInstance.class);
+  private static final Gson GSON = new Gson();
+
+  private static final String DATA_DIR = "standalone.data.dir";
+  private static final String SNAPSHOT_DIR = "standalone.snapshot.dir";
+  private static final String USE_SNAPSHOT = "standalone.snapshot";
+  private static final Path DEFAULT_SNAPSHOT_BASE_DIR =
+    Paths.get(System.getProperty("user.home"), ".cdap-integration-test", "standalone-snapshot");
+  // file in the snapshot which identifies the CDAP jars and data directory that the snapshot was taken with
+  private static final String SNAPSHOT_KEY_FILE = ".snapshot-key";
+
+  private static StandaloneInstance instance;
+
+  private final Path dataDir;
+  private final Path snapshotDir;
+  private final boolean useSnapshot;
+  private final List<URL> classPath;
+  // the StandaloneTester while it is running. Each boot creates a new one, since neither StandaloneTester nor the
+  // CDAP classes it loads expect to be started again after they were stopped.
+  @Nullable
+  private Object standalone;
+  private boolean running;
+  private boolean used;
+
+  /**
+   * Returns the instance of this JVM. It is stopped when the JVM exits.
+   */
+  static synchronized StandaloneInstance get() {
+    if (instance == null) {
+      final StandaloneInstance standaloneInstance = new StandaloneInstance();
+      Runtime.getRuntime().addShutdownHook(new Thread("standalone-shutdown") {
+        @Override
+        public void run() {
+          standaloneInstance.stop();
+        }
+      });
+      instance = standaloneInstance;
+    }
+    return instance;
+  }
+
+  private StandaloneInstance() {
+    this.dataDir = Paths.get(System.getProperty(DATA_DIR, "target/standalone-data")).toAbsolutePath();
+    String snapshotDir = System.getProperty(SNAPSHOT_DIR);
+    this.snapshotDir = snapshotDir == null || snapshotDir.isEmpty()
+      ? DEFAULT_SNAPSHOT_BASE_DIR.resolve(Hashing.sha256().hashString(dataDir.toString(), StandardCharsets.UTF_8)
+                                            .toString().substring(0, 16))
+      : Paths.get(snapshotDir).toAbsolutePath();
+    this.useSnapshot = Boolean.parseBoolean(System.getProperty(USE_SNAPSHOT, "true"));
+    this.classPath = getStandaloneClassPath();
+  }
+
+  /**
+   * Makes sure the standalone is running with the data of the snapshot. If a previous caller used it already,
+   * it is restored first.
+   *
+   * @return the base URI of the standalone
+   */
+  synchronized URI acquire() throws Exception {
+    if (running && used) {
+      restore();
+    } else if (!running) {
+      boot();
+    }
+    used = true;
+    return getBaseURI();
+  }
+
+  /**
+   * Restarts the standalone with the data of the snapshot, discarding all changes made since it was taken.
+   */
+  synchronized void restore() throws Exception {
+    stop();
+    boot();
+    used = false;
+  }
+
+  /**
+   * Stops the standalone if it is running.
+   */
+  synchronized void stop() {
+    if (running) {
+      try {
+        invoke("after");
+      } finally {
+        running = false;
+        closeClassLoader(standalone);
+        standalone = null;
+      }
+    }
+  }
+
+  private void boot() throws Exception {
+    deleteRecursively(dataDir);
+    if (!useSnapshot) {
+      start();
+      return;
+    }
+
+    String snapshotKey = getSnapshotKey();
+    Path keyFile = snapshotDir.resolve(SNAPSHOT_KEY_FILE);
+    if (Files.exists(keyFile)
+      && snapshotKey.equals(new String(Files.readAllBytes(keyFile), StandardCharsets.UTF_8))) {
+      LOG.info("Restoring standalone data directory {} from snapshot {}", dataDir, snapshotDir);
+      copyRecursively(snapshotDir, dataDir);
+      Files.delete(dataDir.resolve(SNAPSHOT_KEY_FILE));
+      start();
+      return;
+    }
+
+    // the snapshot is taken while the standalone is stopped, so that the data directory is consistent
+    start();
+    stop();
+    LOG.info("Taking snapshot {} of standalone data directory {}", snapshotDir, dataDir);
+    deleteRecursively(snapshotDir);
+    copyRecursively(dataDir, snapshotDir);
+    // written last, so that an incomplete snapshot is never used
+    Files.write(keyFile, snapshotKey.getBytes(StandardCharsets.UTF_8));
+    start();
+  }
+
+  private void start() throws Exception {
+    standalone = createStandaloneTester(classPath, dataDir);
+    running = true;
+    invoke("before");
+    URI baseURI = getBaseURI();
+    waitForSystemServices(baseURI);
+    System.setProperty("instanceUri", baseURI.toString());
+  }
+
+  private URI getBaseURI() throws Exception {
+    // Need to use reflection to call method on the standalone object since it is loaded from a different ClassLoader
+    return (URI) standalone.getClass().getMethod("getBaseURI").invoke(standalone);
+  }
+
+  /**
+   * Calls a method of the standalone. Since the standalone instance is created from a different ClassLoader,
+   * it has to be called using reflection.
+   */
+  private void invoke(String methodName) {
+    ClassLoader oldClassLoader = ClassLoaders.setContextClassLoader(standalone.getClass().getClassLoader());
+    try {
+      Method method = standalone.getClass().getDeclaredMethod(methodName);
+      method.setAccessible(true);
+      method.invoke(standalone);
+    } catch (Exception e) {
+      throw Throwables.propagate(e);
+    } finally {
+      ClassLoaders.setContextClassLoader(oldClassLoader);
+    }
+  }
+
+  /**
+   * Waits until all system services report to be OK, so that a snapshot includes everything they set up.
+   */
+  private static void waitForSystemServices(URI baseURI) throws Exception {
+    final URL url = baseURI.resolve("/v3/system/services/status").toURL();
+    Tasks.waitFor(true, () -> {
+      HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+      try {
+        if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+          return false;
+        }
+        try (Reader reader = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+          Map<String, String> statuses = GSON.fromJson(reader, new TypeToken<Map<String, String>>() { }.getType());
+          return !statuses.isEmpty() && Collections.frequency(statuses.values(), "OK") == statuses.size();
+        }
+      } catch (IOException e) {
+        return false;
+      } finally {
+        connection.disconnect();
+      }
+    }, 5, TimeUnit.MINUTES, 1, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Identifies the CDAP jars on the class path by their names, sizes and modification times, so that a snapshot
+   * taken with other CDAP versions or with an older build of the same SNAPSHOT version is not used. The data
+   * directory is part of it too, since the snapshot can only be restored to the path it was taken from.
+   */
+  private String getSnapshotKey() throws IOException {
+    List<String> jars = new ArrayList<>();
+    for (URL url : classPath) {
+      String path = url.getPath();
+      if (path.contains("/io/cdap/")) {
+        Path jar = Paths.get(path);
+        jars.add(jar.getFileName() + ":" + Files.size(jar) + ":" + Files.getLastModifiedTime(jar).toMillis());
+      }
+    }
+    Collections.sort(jars);
+    jars.add(dataDir.toString());
+    return Hashing.sha256().hashString(Joiner.on(',').join(jars), StandardCharsets.UTF_8).toString();
+  }
+
+  private static void deleteRecursively(Path dir) throws IOException {
+    if (!Files.exists(dir)) {
+      return;
+    }
+    Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+        if (exc != null) {
+          throw exc;
+        }
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  private static void copyRecursively(final Path source, final Path target) throws IOException {
+    Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+        Files.createDirectories(target.resolve(source.relativize(dir)));
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.copy(file, target.resolve(source.relativize(file)), StandardCopyOption.COPY_ATTRIBUTES);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  /**
+   * Closes the ClassLoader the given standalone was loaded with, so that the jars it opened are released.
+   */
+  private static void closeClassLoader(Object standalone) {
+    ClassLoader classLoader = standalone.getClass().getClassLoader();
+    if (classLoader instanceof Closeable) {
+      try {
+        ((Closeable) classLoader).close();
+      } catch (IOException e) {
+        LOG.warn("Failed to close the ClassLoader of the standalone", e);
+      }
+    }
+  }
+
+  /**
+   * Returns the class path for the standalone, which excludes test application jars.
+   */
+  private static List<URL> getStandaloneClassPath() {
+    List<URL> urls = new ArrayList<>();
+    for (String path : Splitter.on(':').split(System.getProperty("java.class.path"))) {
+
+      // A small hack is needed since we didn't make example application under different groupId and not prefixed
+      // the artifactId with something special (cdap- and hive-)
+      // Check for io/cdap/cdap
+      if (path.contains("/io/cdap/cdap/")) {
+        String artifactFile = Paths.get(path).getFileName().toString();
+        if (!artifactFile.startsWith("cdap-") && !artifactFile.startsWith("hive-")) {
+          continue;
+        }
+      }
+
+      try {
+        urls.add(Paths.get(path).toUri().toURL());
+      } catch (MalformedURLException e) {
+        throw Throwables.propagate(e);
+      }
+    }
+    return urls;
+  }
+
+  /**
+   * Creates a new instance of StandaloneTester with a new ClassLoader over the given class path,
+   * which keeps its data in the given directory.
+   */
+  private static Object createStandaloneTester(List<URL> classPath, Path dataDir) {
+    ClassLoader classLoader = new MainClassLoader(classPath.toArray(new URL[classPath.size()]), null);
+    try {
+      Class<?> clz = classLoader.loadClass(StandaloneTester.class.getName());
+      Constructor<?> constructor = clz.getConstructor(Object[].class);
+      Object[] configs = { Constants.CFG_LOCAL_DATA_DIR, dataDir.toString() };
+      return constructor.newInstance((Object) configs);
+    } catch (Exception e) {
+      throw Throwables.propagate(e);
+    }
+  }
+}
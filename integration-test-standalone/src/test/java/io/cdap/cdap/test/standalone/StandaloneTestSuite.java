@@ -16,25 +16,11 @@
 
 package io.cdap.cdap.test.standalone;
 
-import com.google.common.base.Splitter;
-import com.google.common.base.Throwables;
-import io.cdap.cdap.StandaloneTester;
-import io.cdap.cdap.common.app.MainClassLoader;
-import io.cdap.cdap.common.lang.ClassLoaders;
 import io.cdap.cdap.test.runner.AutoSuiteRunner;
-import org.junit.BeforeClass;
 import org.junit.ClassRule;
 import org.junit.rules.ExternalResource;
 import org.junit.runner.RunWith;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Method;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  *
  */
@@ -42,78 +28,13 @@ import java.util.List;
 @AutoSuiteRunner.Matches(packages = "io.cdap.cdap.apps")
 public class StandaloneTestSuite {
 
-  private static final Object STANDALONE = createStandaloneTester();
-
+  // The standalone is shared by all suites in the JVM, and only stopped when the JVM exits. Every suite after the
+  // first one gets it restored to the state it had right after booting.
   @ClassRule
   public static final ExternalResource STANDALONE_RESOURCE = new ExternalResource() {
-
-    // Since the STANDALONE instance is created from a different ClassLoader,
-    // we need to trigger call to before and after using reflection.
-
     @Override
     protected void before() throws Throwable {
-      ClassLoader oldClassLoader = ClassLoaders.setContextClassLoader(STANDALONE.getClass().getClassLoader());
-      try {
-        Method before = STANDALONE.getClass().getDeclaredMethod("before");
-        before.setAccessible(true);
-        before.invoke(STANDALONE);
-      } finally {
-        ClassLoaders.setContextClassLoader(oldClassLoader);
-      }
-    }
-
-    @Override
-    protected void after() {
-      ClassLoader oldClassLoader = ClassLoaders.setContextClassLoader(STANDALONE.getClass().getClassLoader());
-      try {
-        Method after = STANDALONE.getClass().getDeclaredMethod("after");
-        after.setAccessible(true);
-        after.invoke(STANDALONE);
-      } catch (Exception e) {
-        throw Throwables.propagate(e);
-      } finally {
-        ClassLoaders.setContextClassLoader(oldClassLoader);
-      }
+      StandaloneInstance.get().acquire();
     }
   };
-
-  @BeforeClass
-  public static void init() throws Exception {
-    // Need to use reflection to call method on the STANDALONE object since it is loaded from a different ClassLoader
-    System.setProperty("instanceUri", STANDALONE.getClass().getMethod("getBaseURI").invoke(STANDALONE).toString());
-  }
-
-  /**
-   * Creates a new instance of StandaloneTester with a new ClassLoader that excludes test application jars.
-   */
-  private static Object createStandaloneTester() {
-    List<URL> urls = new ArrayList<>();
-    for (String path : Splitter.on(':').split(System.getProperty("java.class.path"))) {
-
-      // A small hack is needed since we didn't make example application under different groupId and not prefixed
-      // the artifactId with something special (cdap- and hive-)
-      // Check for io/cdap/cdap
-      if (path.contains("/io/cdap/cdap/")) {
-        String artifactFile = Paths.get(path).getFileName().toString();
-        if (!artifactFile.startsWith("cdap-") && !artifactFile.startsWith("hive-")) {
-          continue;
-        }
-      }
-
-      try {
-        urls.add(Paths.get(path).toUri().toURL());
-      } catch (MalformedURLException e) {
-        throw Throwables.propagate(e);
-      }
-    }
-
-    ClassLoader classLoader = new MainClassLoader(urls.toArray(new URL[urls.size()]), null);
-    try {
-      Class<?> clz = classLoader.loadClass(StandaloneTester.class.getName());
-      Constructor<?> constructor = clz.getConstructor(Object[].class);
-      return constructor.newInstance((Object) new Object[0]);
-    } catch (Exception e) {
-      throw Throwables.propagate(e);
-    }
-  }
 }
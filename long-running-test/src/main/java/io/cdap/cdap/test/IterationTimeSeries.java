@@ -0,0 +1,104 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes how long each step of each iteration of a long running test took, as one CSV row per iteration. Every row
+ * is flushed right away, so that the series is complete up to the last iteration even if the JVM dies. A resumed
+ * series is appended to, and its iterations are numbered on from the last one in the file.
+ */
+final class IterationTimeSeries implements Closeable {
+
+  static final String CSV_HEADER = "iteration,start_time,await_millis,verify_millis,run_millis,total_millis";
+
+  private final Writer writer;
+  private final int lastIteration;
+
+  /**
+   * @param file the CSV file to write to
+   * @param resume whether to append to the series in the file if there is one, rather than starting a new one
+   */
+  IterationTimeSeries(Path file, boolean resume) throws IOException {
+    Path dir = file.toAbsolutePath().getParent();
+    if (dir != null) {
+      Files.createDirectories(dir);
+    }
+    if (resume && Files.exists(file) && Files.size(file) > 0) {
+      String series = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+      lastIteration = getLastIteration(series);
+      writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+      if (!series.endsWith("\n")) {
+        // ends the row that was cut off when the JVM died while writing it
+        writer.write('\n');
+        writer.flush();
+      }
+    } else {
+      lastIteration = 0;
+      writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+      writer.write(CSV_HEADER);
+      writer.write('\n');
+      writer.flush();
+    }
+  }
+
+  /**
+   * @return the number of the last iteration in the series, or 0 if it has none
+   */
+  int getLastIteration() {
+    return lastIteration;
+  }
+
+  /**
+   * Adds the durations of the steps of an iteration.
+   *
+   * @param startTime when the iteration started, in milliseconds since the epoch
+   */
+  void add(int iteration, long startTime, long awaitMillis, long verifyMillis, long runMillis) throws IOException {
+    writer.write(String.format("%d,%d,%d,%d,%d,%d\n", iteration, startTime, awaitMillis, verifyMillis, runMillis,
+                               awaitMillis + verifyMillis + runMillis));
+    writer.flush();
+  }
+
+  /**
+   * Returns the iteration of the last complete row of the given series, or 0 if it has none.
+   */
+  private static int getLastIteration(String series) {
+    String[] rows = series.split("\n");
+    // the last row is incomplete if the JVM died while writing it
+    int completeRows = series.endsWith("\n") ? rows.length : rows.length - 1;
+    for (int i = completeRows - 1; i >= 0; i--) {
+      String iteration = rows[i].substring(0, Math.max(rows[i].indexOf(','), 0));
+      if (!iteration.isEmpty() && iteration.chars().allMatch(Character::isDigit)) {
+        return Integer.parseInt(iteration);
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  public void close() throws IOException {
+    writer.close();
+  }
+}
@@ -19,36 +19,98 @@ package io.cdap.cdap.test;
 import com.google.gson.Gson;
 import io.cdap.cdap.proto.NamespaceMeta;
 import io.cdap.cdap.proto.id.NamespaceId;
+import io.cdap.cdap.test.shared.TestStateJournal;
+import io.cdap.cdap.test.shared.TestStateStore;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.BeforeClass;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 /**
  * Abstract class for writing long running tests for CDAP.
  *
+ * Different tests may run concurrently, but the steps of each test always run in order in the same thread.
+ *
+ * By default, a test runs one iteration per run of the suite. In soak mode, it runs iterations in a loop instead,
+ * until it ran {@code long.running.soak.iterations} iterations or {@code long.running.soak.duration.minutes}
+ * passed, whichever comes first. The state is saved after each iteration, and the durations of the steps of each
+ * iteration are written to {@code <test class name>.csv} in the directory given by {@code long.running.soak.dir},
+ * {@code target/soak} by default.
+ *
+ * An iteration can record named performance samples with {@link #recordSample(String, double, Direction)}, which
+ * are persisted along with the state of the test. Each sample is compared with the median of its values in the last
+ * {@code long.running.regression.window} iterations, 10 by default, once there are at least
+ * {@code long.running.regression.min.samples} of them, 3 by default. A sample that is worse than that by more than
+ * the fraction {@code long.running.regression.tolerance}, 0.5 by default, is a regression. Regressions are logged,
+ * and fail the test if {@code long.running.regression.fail} is true.
+ *
  * @param <T> Type of test state
  */
 public abstract class LongRunningTestBase<T extends TestState> extends AudiTestBase implements LongRunningTest<T> {
   public static final Logger LOG = LoggerFactory.getLogger(LongRunningTestBase.class);
-  // key is Test class name and value is test state in json format
-  private static Map<String, String> inMemoryStatePerTest;
   private static final Gson GSON = new Gson();
 
   private static final String STAGE = System.getProperty("stage");
   private static final String PRE = "PRE";
   private static final String POST = "POST";
 
+  // soak mode is enabled by setting either limit
+  private static final int SOAK_ITERATIONS = Integer.getInteger("long.running.soak.iterations", 0);
+  private static final long SOAK_DURATION_MINUTES = Long.getLong("long.running.soak.duration.minutes", 0L);
+  private static final Path SOAK_DIR = Paths.get(System.getProperty("long.running.soak.dir", "target/soak"));
+
+  private static final double REGRESSION_TOLERANCE =
+    Double.parseDouble(System.getProperty("long.running.regression.tolerance", "0.5"));
+  private static final int REGRESSION_WINDOW = Integer.getInteger("long.running.regression.window", 10);
+  private static final int REGRESSION_MIN_SAMPLES = Integer.getInteger("long.running.regression.min.samples", 3);
+  private static final boolean REGRESSION_FAIL = Boolean.getBoolean("long.running.regression.fail");
+  // suffix of the key that the performance history of a test is stored with, next to its state
+  private static final String PERFORMANCE_KEY_SUFFIX = ".performance";
+
+  /**
+   * Whether smaller or larger values of a performance sample are better.
+   */
+  public enum Direction {
+    // such as durations and latencies
+    LOWER_IS_BETTER,
+    // such as throughput
+    HIGHER_IS_BETTER
+  }
+
   private NamespaceId longRunningNamespace;
   private T state;
+  // whether the state of the test was just initialized, rather than read from a previous run
+  private boolean firstRun;
+  private PerformanceHistory performanceHistory;
+  // samples recorded during the current iteration
+  private final Map<String, PerformanceHistory.Sample> samples = new LinkedHashMap<>();
+  // failures recorded during the current iteration
+  private final List<Throwable> failures = new ArrayList<>();
 
-  public static void initializeInMemoryMap(Map<String, String> inMemoryMap) {
-    inMemoryStatePerTest = inMemoryMap;
+  /**
+   * Sets the test states, with the test class name as key and the test state in json format as value.
+   *
+   * @param journal the journal to persist the state of a test to after each iteration, or {@code null} if the states
+   *                are only kept in memory
+   */
+  public static void initializeInMemoryMap(Map<String, String> inMemoryMap,
+                                           @Nullable TestStateJournal journal) throws IOException {
+    TestStateStore.initialize(inMemoryMap, journal);
   }
 
   private NamespaceId configureLongRunningNamespace(String namespace) throws Exception {
@@ -60,8 +122,11 @@ public abstract class LongRunningTestBase<T extends TestState> extends AudiTestB
     return namespaceId;
   }
 
-  public static Map<String, String> getInMemoryMap() {
-    return inMemoryStatePerTest;
+  /**
+   * @return a copy of the test states, sorted by test class name
+   */
+  public static SortedMap<String, String> getInMemoryMap() {
+    return TestStateStore.snapshot();
   }
 
   public NamespaceId getLongRunningNamespace() {
@@ -72,23 +137,29 @@ public abstract class LongRunningTestBase<T extends TestState> extends AudiTestB
   @Override
   public void setUp() throws Exception {
     checkSystemServices();
-    longRunningNamespace =
-      configureLongRunningNamespace(System.getProperty("long.running.namespace", TEST_NAMESPACE.getNamespace()));
+    // the namespace must be the same in every run, no matter which worker runs the test
+    longRunningNamespace = configureLongRunningNamespace(
+      System.getProperty("long.running.namespace", getConfiguredNamespace().getNamespace()));
 
-    boolean firstRun = false;
+    firstRun = false;
     Type stateType = ((ParameterizedType) getClass().getGenericSuperclass()).getActualTypeArguments()[0];
     String key = getTestName();
-    if (inMemoryStatePerTest.containsKey(key)) {
-      state = GSON.fromJson(inMemoryStatePerTest.get(key), stateType);
+    String inputState = TestStateStore.get(key);
+    if (inputState != null) {
+      state = GSON.fromJson(inputState, stateType);
     } else {
       LOG.warn("Input state not found, treating this as the first run");
       firstRun = true;
       state = getInitialState();
-      inMemoryStatePerTest.put(key, GSON.toJson(state));
+      TestStateStore.put(key, GSON.toJson(state));
     }
 
     LOG.info("Got input state = {}", state);
 
+    String performanceHistoryJson = TestStateStore.get(key + PERFORMANCE_KEY_SUFFIX);
+    performanceHistory = performanceHistoryJson == null
+      ? new PerformanceHistory() : GSON.fromJson(performanceHistoryJson, PerformanceHistory.class);
+
     if (firstRun) {
       LOG.info("Executing first run of long running test {}...", getTestName());
       deploy();
@@ -96,10 +167,45 @@ public abstract class LongRunningTestBase<T extends TestState> extends AudiTestB
     }
   }
 
+  @BeforeClass
+  public static void prepareTestClass() {
+    // hides the one of AudiTestBase, since long running tests don't use the namespace of the worker that runs them
+  }
+
+  @Before
+  @Override
+  public void prepareTest() throws Exception {
+    // long running tests don't use the namespace of the worker that runs them, so it is neither created nor removed
+  }
+
   @After
   @Override
   public void tearDown() throws Exception {
-    inMemoryStatePerTest.put(getTestName(), GSON.toJson(state));
+    checkpoint();
+  }
+
+  private void checkpoint() throws Exception {
+    TestStateStore.put(getTestName(), GSON.toJson(state));
+    if (performanceHistory != null) {
+      TestStateStore.put(getTestName() + PERFORMANCE_KEY_SUFFIX, GSON.toJson(performanceHistory));
+    }
+  }
+
+  /**
+   * Records a performance sample of the current iteration, such as the duration of a program run or the achieved
+   * throughput. It is compared with the values of the same sample in previous iterations at the end of the iteration.
+   */
+  protected void recordSample(String name, double value, Direction direction) {
+    samples.put(name, new PerformanceHistory.Sample(value, direction));
+  }
+
+  /**
+   * Records a failure of the current iteration. Unlike a thrown exception, it doesn't keep the state returned by
+   * {@link #runOperations} from being saved, so a test can fail an iteration and still save a state that the next
+   * iteration can verify. The test fails once the iteration is done.
+   */
+  protected void recordFailure(Throwable failure) {
+    failures.add(failure);
   }
 
   private String getTestName() {
@@ -110,6 +216,8 @@ public abstract class LongRunningTestBase<T extends TestState> extends AudiTestB
   public void test() throws Exception {
     if (Boolean.getBoolean("longrunning.as.upgrade")) {
       testUpgrade();
+    } else if (SOAK_ITERATIONS > 0 || SOAK_DURATION_MINUTES > 0) {
+      testSoak();
     } else {
       testLongRunning();
     }
@@ -120,6 +228,26 @@ public abstract class LongRunningTestBase<T extends TestState> extends AudiTestB
     runOneIteration();
   }
 
+  private void testSoak() throws Exception {
+    long deadline = SOAK_DURATION_MINUTES > 0
+      ? System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(SOAK_DURATION_MINUTES) : Long.MAX_VALUE;
+    Path timeSeriesFile = SOAK_DIR.resolve(getTestName() + ".csv");
+    LOG.info("Soaking long running test {} for {} iterations and {} minutes, writing durations to {}",
+             getTestName(), SOAK_ITERATIONS > 0 ? SOAK_ITERATIONS : "unlimited",
+             SOAK_DURATION_MINUTES > 0 ? SOAK_DURATION_MINUTES : "unlimited", timeSeriesFile);
+    // a soak that continues from the state of a previous one continues its time series too
+    try (IterationTimeSeries timeSeries = new IterationTimeSeries(timeSeriesFile, !firstRun)) {
+      int first = timeSeries.getLastIteration() + 1;
+      for (int iteration = first;
+           (SOAK_ITERATIONS <= 0 || iteration < first + SOAK_ITERATIONS) && System.currentTimeMillis() < deadline;
+           iteration++) {
+        runOneIteration(timeSeries, iteration);
+        // so that the progress survives if the soak is interrupted
+        checkpoint();
+      }
+    }
+  }
+
   private void testUpgrade() throws Exception {
     LOG.info("Testing stage {} of Upgrade: {}.", STAGE, getTestName());
     if (POST.equalsIgnoreCase(STAGE)) {
@@ -134,8 +262,8 @@ public abstract class LongRunningTestBase<T extends TestState> extends AudiTestB
     }
     try {
       // run two iterations and then verify runs at the end (don't need to runOperations at the end)
-      runOneIteration();
-      runOneIteration();
+      runOneIteration(null, 1);
+      runOneIteration(null, 2);
 
       LOG.info("Calling awaitOperations...");
       awaitOperations(state);
@@ -153,16 +281,65 @@ public abstract class LongRunningTestBase<T extends TestState> extends AudiTestB
   }
 
   private void runOneIteration() throws Exception {
+    runOneIteration(null, 1);
+  }
+
+  /**
+   * Runs one iteration, and adds the durations of its steps to the given time series, if there is one.
+   */
+  private void runOneIteration(@Nullable IterationTimeSeries timeSeries, int iteration) throws Exception {
     LOG.info("Running one iteration of test run {}", getTestName());
+    long startTime = System.currentTimeMillis();
+    samples.clear();
+    failures.clear();
 
     LOG.info("Calling awaitOperations...");
+    long stepStart = System.nanoTime();
     awaitOperations(state);
+    long awaitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stepStart);
     LOG.info("Calling verifyRuns...");
+    stepStart = System.nanoTime();
     state = verifyRuns(state);
+    long verifyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stepStart);
     LOG.info("Calling runOperations with updated state: {}", state);
+    stepStart = System.nanoTime();
     state = runOperations(state);
+    long runMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stepStart);
     LOG.info("Got output state = {}", state);
 
-    LOG.info("One iteration of test run {} completed", getTestName());
+    LOG.info("Iteration {} of test run {} completed in {} ms (await {} ms, verify {} ms, run {} ms)", iteration,
+             getTestName(), awaitMillis + verifyMillis + runMillis, awaitMillis, verifyMillis, runMillis);
+    if (timeSeries != null) {
+      timeSeries.add(iteration, startTime, awaitMillis, verifyMillis, runMillis);
+    }
+    // the samples of a failed iteration are not added to the performance history
+    if (!failures.isEmpty()) {
+      AssertionError error = new AssertionError(String.format("Iteration %d of test run %s failed: %s", iteration,
+                                                              getTestName(), failures.get(0)));
+      for (Throwable failure : failures) {
+        error.addSuppressed(failure);
+      }
+      throw error;
+    }
+    checkPerformance();
+  }
+
+  /**
+   * Compares the samples of the current iteration with the baseline, and then adds those that did not regress to it.
+   */
+  private void checkPerformance() {
+    if (samples.isEmpty()) {
+      return;
+    }
+    LOG.info("Performance samples of test run {}: {}", getTestName(), samples);
+    List<String> regressions =
+      performanceHistory.update(samples, REGRESSION_TOLERANCE, REGRESSION_MIN_SAMPLES, REGRESSION_WINDOW);
+    for (String regression : regressions) {
+      LOG.warn("Performance regression in test run {}: {}", getTestName(), regression);
+    }
+    if (REGRESSION_FAIL && !regressions.isEmpty()) {
+      throw new AssertionError(String.format("Performance regressions in test run %s: %s",
+                                             getTestName(), regressions));
+    }
   }
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The recent values of the named performance samples of a long running test, which are the baseline that new
+ * samples are compared with. It is persisted along with the state of the test.
+ */
+final class PerformanceHistory {
+
+  // sample name -> recent values, oldest first
+  private final Map<String, List<Double>> samples = new TreeMap<>();
+
+  /**
+   * Compares the given samples with the baseline, then adds those that did not regress to it. Regressed samples are
+   * left out, so that a lasting regression keeps being reported rather than becoming the baseline.
+   *
+   * @return a description of every sample that regressed
+   * @see #findRegressions(Map, double, int)
+   */
+  List<String> update(Map<String, Sample> current, double tolerance, int minValues, int window) {
+    Map<String, String> regressions = findRegressions(current, tolerance, minValues);
+    Map<String, Sample> accepted = new LinkedHashMap<>(current);
+    accepted.keySet().removeAll(regressions.keySet());
+    add(accepted, window);
+    return new ArrayList<>(regressions.values());
+  }
+
+  /**
+   * Compares the given samples with the median of the recent values of each, and returns a description of every
+   * sample that is worse than its median by more than the given tolerance. A sample with fewer than the given number
+   * of recent values is not compared.
+   *
+   * @param tolerance the fraction that a sample may be worse than the baseline, e.g. 0.5 to allow 1.5 times the
+   *                  baseline duration, or two thirds of the baseline throughput
+   * @return the descriptions of the regressed samples, by sample name
+   */
+  Map<String, String> findRegressions(Map<String, Sample> current, double tolerance, int minValues) {
+    Map<String, String> regressions = new LinkedHashMap<>();
+    for (Map.Entry<String, Sample> entry : current.entrySet()) {
+      List<Double> values = samples.get(entry.getKey());
+      if (values == null || values.size() < minValues) {
+        continue;
+      }
+      double baseline = median(values);
+      Sample sample = entry.getValue();
+      boolean regressed = sample.direction == LongRunningTestBase.Direction.LOWER_IS_BETTER
+        ? sample.value > baseline * (1 + tolerance)
+        : sample.value < baseline / (1 + tolerance);
+      if (regressed) {
+        regressions.put(entry.getKey(), String.format("%s is %s, but the baseline of the last %d iterations is %s",
+                                                      entry.getKey(), sample.value, values.size(), baseline));
+      }
+    }
+    return regressions;
+  }
+
+  /**
+   * Adds the given samples, keeping at most the given number of recent values per sample.
+   */
+  void add(Map<String, Sample> current, int window) {
+    for (Map.Entry<String, Sample> entry : current.entrySet()) {
+      List<Double> values = samples.get(entry.getKey());
+      if (values == null) {
+        values = new ArrayList<>();
+        samples.put(entry.getKey(), values);
+      }
+      values.add(entry.getValue().value);
+      while (values.size() > window) {
+        values.remove(0);
+      }
+    }
+  }
+
+  private static double median(List<Double> values) {
+    List<Double> sorted = new ArrayList<>(values);
+    Collections.sort(sorted);
+    int middle = sorted.size() / 2;
+    return sorted.size() % 2 == 1 ? sorted.get(middle) : (sorted.get(middle - 1) + sorted.get(middle)) / 2;
+  }
+
+  /**
+   * A performance sample of an iteration.
+   */
+  static final class Sample {
+    private final double value;
+    private final LongRunningTestBase.Direction direction;
+
+    Sample(double value, LongRunningTestBase.Direction direction) {
+      this.value = value;
+      this.direction = direction;
+    }
+
+    @Override
+    public String toString() {
+      return Double.toString(value);
+    }
+  }
+}
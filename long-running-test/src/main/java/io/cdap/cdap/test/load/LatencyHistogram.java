@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test.load;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies in microseconds, in the style of an HDR histogram: every power of two range is split into
+ * the same number of linear buckets, so that any recorded value is known to within 1/64 of itself, with a fixed
+ * amount of memory. Values from 0 to about 12 days can be recorded; larger values are recorded as the maximum.
+ *
+ * Recording is lock free, so it can be done concurrently by all threads that generate load.
+ */
+public final class LatencyHistogram {
+
+  // values below 2^SUB_BUCKET_BITS are recorded exactly, larger ones with SUB_BUCKET_HALF buckets per power of two
+  private static final int SUB_BUCKET_BITS = 7;
+  private static final int SUB_BUCKET_HALF = 1 << (SUB_BUCKET_BITS - 1);
+  private static final long MAX_VALUE = (1L << 40) - 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(getIndex(MAX_VALUE) + 1);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+  /**
+   * Records a latency in the given unit.
+   */
+  public void record(long latency, TimeUnit unit) {
+    long micros = Math.min(Math.max(unit.toMicros(latency), 0L), MAX_VALUE);
+    counts.incrementAndGet(getIndex(micros));
+    count.increment();
+    sum.add(micros);
+    min.accumulate(micros);
+    max.accumulate(micros);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * @return the smallest latency recorded, in microseconds, or 0 if none was recorded
+   */
+  public long getMinMicros() {
+    return getCount() == 0 ? 0L : min.get();
+  }
+
+  public long getMaxMicros() {
+    return max.get();
+  }
+
+  public double getMeanMicros() {
+    long n = getCount();
+    return n == 0 ? 0d : (double) sum.sum() / n;
+  }
+
+  /**
+   * @param percentile the percentile, between 0 and 100
+   * @return the latency in microseconds which the given percentage of recorded latencies is equal to or below,
+   *         which is exact to within 1/64 of it, or 0 if nothing was recorded
+   */
+  public long getValueAtPercentile(double percentile) {
+    long total = getCount();
+    if (total == 0) {
+      return 0L;
+    }
+    long target = Math.max(1L, (long) Math.ceil(Math.min(percentile, 100d) / 100d * total));
+    long seen = 0;
+    for (int i = 0; i < counts.length(); i++) {
+      seen += counts.get(i);
+      if (seen >= target) {
+        return Math.min(getHighestValue(i), getMaxMicros());
+      }
+    }
+    return getMaxMicros();
+  }
+
+  private static int getIndex(long value) {
+    if (value < (1L << SUB_BUCKET_BITS)) {
+      return (int) value;
+    }
+    int magnitude = 63 - Long.numberOfLeadingZeros(value);
+    int shift = magnitude - (SUB_BUCKET_BITS - 1);
+    return shift * SUB_BUCKET_HALF + (int) (value >>> shift);
+  }
+
+  private static long getHighestValue(int index) {
+    if (index < (1 << SUB_BUCKET_BITS)) {
+      return index;
+    }
+    int shift = index / SUB_BUCKET_HALF - 1;
+    long subBucket = index - shift * SUB_BUCKET_HALF;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test.load;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Generates open-loop load: operations are started on a schedule given by a {@link LoadSpec}, no matter whether
+ * earlier operations completed. If all threads are busy, operations queue up, and the time they wait counts towards
+ * their latency, since the latency is measured from when an operation was scheduled to start. A slow system
+ * therefore shows up as high latencies, rather than as a lower rate of operations that all look fast.
+ */
+public final class LoadGenerator {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LoadGenerator.class);
+  // the rate during the ramp-up starts at this fraction of the target rate, rather than at zero
+  private static final double MIN_RAMP_UP_FRACTION = 0.01;
+
+  /**
+   * An operation to generate load with.
+   */
+  public interface Operation {
+
+    /**
+     * Performs the operation once. Anything it throws, including an {@link AssertionError}, counts the operation as
+     * failed.
+     *
+     * @param sequence the number of the operation, starting at 0
+     */
+    void run(long sequence) throws Exception;
+  }
+
+  private final LoadSpec spec;
+  private final Random random = new Random();
+
+  public LoadGenerator(LoadSpec spec) {
+    this.spec = spec;
+  }
+
+  /**
+   * Runs the given operation as described by the spec, and returns once all started operations completed or the
+   * drain timeout passed.
+   */
+  public LoadResult run(final Operation operation) throws InterruptedException {
+    LOG.info("Generating load of {} operations per second with {} arrivals and concurrency {} for {} ms",
+             spec.getRatePerSecond(), spec.getArrival(), spec.getConcurrency(), spec.getDurationMillis());
+    final LatencyHistogram histogram = new LatencyHistogram();
+    final AtomicLong failures = new AtomicLong();
+    final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+    ExecutorService executor = Executors.newFixedThreadPool(
+      spec.getConcurrency(), new ThreadFactoryBuilder().setNameFormat("load-generator-%d").setDaemon(true).build());
+
+    long start = System.nanoTime();
+    long durationNanos = TimeUnit.MILLISECONDS.toNanos(spec.getDurationMillis());
+    long scheduled = start;
+    long started = 0;
+    try {
+      while (scheduled - start < durationNanos && (spec.getMaxOperations() == 0 || started < spec.getMaxOperations())) {
+        sleepUntil(scheduled);
+        final long scheduledTime = scheduled;
+        final long sequence = started++;
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              operation.run(sequence);
+            } catch (Throwable t) {
+              // errors are counted too, since an error that escaped would only end the thread and go unnoticed
+              failures.incrementAndGet();
+              firstFailure.compareAndSet(null, t);
+            } finally {
+              histogram.record(System.nanoTime() - scheduledTime, TimeUnit.NANOSECONDS);
+            }
+          }
+        });
+        scheduled += getIntervalNanos(scheduled - start);
+      }
+    } finally {
+      executor.shutdown();
+    }
+    if (!executor.awaitTermination(spec.getDrainTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+      LOG.warn("Operations did not complete within {} ms after the load ended", spec.getDrainTimeoutMillis());
+      executor.shutdownNow();
+    }
+    long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    if (firstFailure.get() != null) {
+      LOG.warn("{} of {} operations failed, the first with", failures.get(), started, firstFailure.get());
+    }
+    LoadResult result = new LoadResult(spec.getRatePerSecond(), durationMillis, failures.get(),
+                                       started - histogram.getCount(), histogram);
+    LOG.info("Generated load: {}", result);
+    return result;
+  }
+
+  /**
+   * Returns the time until the next operation should start, given the time since the load started.
+   */
+  private long getIntervalNanos(long elapsedNanos) {
+    double rate = spec.getRatePerSecond();
+    long rampUpNanos = TimeUnit.MILLISECONDS.toNanos(spec.getRampUpMillis());
+    if (elapsedNanos < rampUpNanos) {
+      rate *= Math.max((double) elapsedNanos / rampUpNanos, MIN_RAMP_UP_FRACTION);
+    }
+    double meanIntervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+    switch (spec.getArrival()) {
+      case POISSON:
+        // 1 - nextDouble() is in (0, 1], so the logarithm is finite
+        return Math.max(1L, (long) (-Math.log(1d - random.nextDouble()) * meanIntervalNanos));
+      case CONSTANT:
+      default:
+        return Math.max(1L, (long) meanIntervalNanos);
+    }
+  }
+
+  private static void sleepUntil(long nanoTime) throws InterruptedException {
+    long remaining = nanoTime - System.nanoTime();
+    while (remaining > 0) {
+      LockSupport.parkNanos(remaining);
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      remaining = nanoTime - System.nanoTime();
+    }
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test.load;
+
+/**
+ * The outcome of a run of the {@link LoadGenerator}, meant to be kept in the {@link io.cdap.cdap.test.TestState} of a
+ * long running test. Latencies are in microseconds, and are measured from when an operation was scheduled to start,
+ * so that they include the time it waited because the system could not keep up.
+ */
+public final class LoadResult {
+
+  private final double targetRate;
+  private final double achievedRate;
+  private final long durationMillis;
+  private final long operations;
+  private final long failures;
+  private final long incomplete;
+  private final double meanMicros;
+  private final long p50Micros;
+  private final long p90Micros;
+  private final long p99Micros;
+  private final long p999Micros;
+  private final long maxMicros;
+
+  LoadResult(double targetRate, long durationMillis, long failures, long incomplete, LatencyHistogram histogram) {
+    this.targetRate = targetRate;
+    this.durationMillis = durationMillis;
+    this.operations = histogram.getCount();
+    this.failures = failures;
+    this.incomplete = incomplete;
+    this.achievedRate = durationMillis == 0 ? 0d : (operations - failures) * 1000d / durationMillis;
+    this.meanMicros = histogram.getMeanMicros();
+    this.p50Micros = histogram.getValueAtPercentile(50);
+    this.p90Micros = histogram.getValueAtPercentile(90);
+    this.p99Micros = histogram.getValueAtPercentile(99);
+    this.p999Micros = histogram.getValueAtPercentile(99.9);
+    this.maxMicros = histogram.getMaxMicros();
+  }
+
+  /**
+   * @return the rate that operations were scheduled at after the ramp-up, per second
+   */
+  public double getTargetRate() {
+    return targetRate;
+  }
+
+  /**
+   * @return the rate of successful operations over the whole run, per second
+   */
+  public double getAchievedRate() {
+    return achievedRate;
+  }
+
+  public long getDurationMillis() {
+    return durationMillis;
+  }
+
+  /**
+   * @return the number of operations that completed, successfully or not
+   */
+  public long getOperations() {
+    return operations;
+  }
+
+  public long getFailures() {
+    return failures;
+  }
+
+  /**
+   * @return the number of operations that did not complete before the generator gave up waiting for them
+   */
+  public long getIncomplete() {
+    return incomplete;
+  }
+
+  public double getMeanMicros() {
+    return meanMicros;
+  }
+
+  public long getP50Micros() {
+    return p50Micros;
+  }
+
+  public long getP90Micros() {
+    return p90Micros;
+  }
+
+  public long getP99Micros() {
+    return p99Micros;
+  }
+
+  public long getP999Micros() {
+    return p999Micros;
+  }
+
+  public long getMaxMicros() {
+    return maxMicros;
+  }
+
+  @Override
+  public String toString() {
+    return "LoadResult{" +
+      "targetRate=" + targetRate +
+      ", achievedRate=" + achievedRate +
+      ", durationMillis=" + durationMillis +
+      ", operations=" + operations +
+      ", failures=" + failures +
+      ", incomplete=" + incomplete +
+      ", meanMicros=" + meanMicros +
+      ", p50Micros=" + p50Micros +
+      ", p90Micros=" + p90Micros +
+      ", p99Micros=" + p99Micros +
+      ", p999Micros=" + p999Micros +
+      ", maxMicros=" + maxMicros +
+      '}';
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test.load;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes the load that the {@link LoadGenerator} produces: the rate at which operations are started, how they
+ * arrive, how many may run at the same time, and for how long.
+ */
+public final class LoadSpec {
+
+  /**
+   * How the start times of operations are distributed.
+   */
+  public enum Arrival {
+    // operations start at a fixed interval
+    CONSTANT,
+    // intervals between operations are exponentially distributed, as for independent clients
+    POISSON
+  }
+
+  private final double ratePerSecond;
+  private final int concurrency;
+  private final Arrival arrival;
+  private final long rampUpMillis;
+  private final long durationMillis;
+  private final long maxOperations;
+  private final long drainTimeoutMillis;
+
+  private LoadSpec(double ratePerSecond, int concurrency, Arrival arrival, long rampUpMillis, long durationMillis,
+                   long maxOperations, long drainTimeoutMillis) {
+    this.ratePerSecond = ratePerSecond;
+    this.concurrency = concurrency;
+    this.arrival = arrival;
+    this.rampUpMillis = rampUpMillis;
+    this.durationMillis = durationMillis;
+    this.maxOperations = maxOperations;
+    this.drainTimeoutMillis = drainTimeoutMillis;
+  }
+
+  /**
+   * @return the number of operations to start per second, once ramped up
+   */
+  public double getRatePerSecond() {
+    return ratePerSecond;
+  }
+
+  /**
+   * @return the maximum number of operations that run at the same time
+   */
+  public int getConcurrency() {
+    return concurrency;
+  }
+
+  public Arrival getArrival() {
+    return arrival;
+  }
+
+  /**
+   * @return the time over which the rate increases linearly to its target, which is part of the duration
+   */
+  public long getRampUpMillis() {
+    return rampUpMillis;
+  }
+
+  /**
+   * @return the time during which operations are started
+   */
+  public long getDurationMillis() {
+    return durationMillis;
+  }
+
+  /**
+   * @return the maximum number of operations to start, or 0 for no limit other than the duration
+   */
+  public long getMaxOperations() {
+    return maxOperations;
+  }
+
+  /**
+   * @return how long to wait for started operations to complete after the duration
+   */
+  public long getDrainTimeoutMillis() {
+    return drainTimeoutMillis;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Builder for {@link LoadSpec}.
+   */
+  public static final class Builder {
+    private double ratePerSecond = 1;
+    private int concurrency = 1;
+    private Arrival arrival = Arrival.CONSTANT;
+    private long rampUpMillis;
+    private long durationMillis = TimeUnit.MINUTES.toMillis(1);
+    private long maxOperations;
+    private long drainTimeoutMillis = TimeUnit.MINUTES.toMillis(5);
+
+    private Builder() {
+    }
+
+    public Builder setRatePerSecond(double ratePerSecond) {
+      Preconditions.checkArgument(ratePerSecond > 0, "Rate must be positive, but was %s", ratePerSecond);
+      this.ratePerSecond = ratePerSecond;
+      return this;
+    }
+
+    public Builder setConcurrency(int concurrency) {
+      Preconditions.checkArgument(concurrency > 0, "Concurrency must be positive, but was %s", concurrency);
+      this.concurrency = concurrency;
+      return this;
+    }
+
+    public Builder setArrival(Arrival arrival) {
+      this.arrival = arrival;
+      return this;
+    }
+
+    public Builder setRampUp(long rampUp, TimeUnit unit) {
+      Preconditions.checkArgument(rampUp >= 0, "Ramp-up must not be negative, but was %s", rampUp);
+      this.rampUpMillis = unit.toMillis(rampUp);
+      return this;
+    }
+
+    public Builder setDuration(long duration, TimeUnit unit) {
+      Preconditions.checkArgument(duration > 0, "Duration must be positive, but was %s", duration);
+      this.durationMillis = unit.toMillis(duration);
+      return this;
+    }
+
+    public Builder setMaxOperations(long maxOperations) {
+      Preconditions.checkArgument(maxOperations >= 0, "Maximum operations must not be negative, but was %s",
+                                  maxOperations);
+      this.maxOperations = maxOperations;
+      return this;
+    }
+
+    public Builder setDrainTimeout(long drainTimeout, TimeUnit unit) {
+      Preconditions.checkArgument(drainTimeout >= 0, "Drain timeout must not be negative, but was %s", drainTimeout);
+      this.drainTimeoutMillis = unit.toMillis(drainTimeout);
+      return this;
+    }
+
+    public LoadSpec build() {
+      Preconditions.checkArgument(rampUpMillis <= durationMillis,
+                                  "Ramp-up of %s ms is longer than the duration of %s ms",
+                                  rampUpMillis, durationMillis);
+      return new LoadSpec(ratePerSecond, concurrency, arrival, rampUpMillis, durationMillis, maxOperations,
+                          drainTimeoutMillis);
+    }
+  }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test.shared;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of the states of long running tests, so that the progress of every test survives if the
+ * JVM dies before the end of the suite.
+ *
+ * Each state update is appended as a record of its own and synced to disk, so an update only costs the size of the
+ * new state. A record consists of the length of its payload, the CRC32 of the payload, and the payload, which is the
+ * test name followed by the state. When the journal is opened, records are read up to the first one which is
+ * incomplete or does not match its checksum, as left behind by a crash while appending, and the journal is truncated
+ * there. The latest record of every test is its state.
+ *
+ * Once the journal holds many more records than tests, it is compacted by rewriting it with only the latest state of
+ * every test, to a new file that replaces the journal atomically.
+ *
+ * It is safe to use from multiple threads.
+ */
+public final class TestStateJournal implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TestStateJournal.class);
+  // "LRTJ", identifies the file as a journal
+  private static final int MAGIC = 0x4C52544A;
+  private static final int HEADER_SIZE = 4;
+  // length and checksum
+  private static final int RECORD_HEADER_SIZE = 8;
+  // the journal is compacted once it has more than this many records per test
+  private static final int COMPACTION_FACTOR = 4;
+  private static final int MIN_RECORDS_TO_COMPACT = 32;
+
+  private final Path file;
+  // latest state of every test, sorted so that a compacted journal does not depend on the order of updates
+  private final Map<String, String> states;
+  private FileChannel channel;
+  private int records;
+
+  private TestStateJournal(Path file, Map<String, String> states, FileChannel channel, int records) {
+    this.file = file;
+    this.states = states;
+    this.channel = channel;
+    this.records = records;
+  }
+
+  /**
+   * Opens the given journal, creating it if it does not exist, and recovers the latest valid state of every test
+   * from it.
+   *
+   * @throws IOException if the file exists but is not a journal, or it can't be read or written
+   */
+  public static TestStateJournal open(Path file) throws IOException {
+    Map<String, String> states = new TreeMap<>();
+    int records = 0;
+    long validLength = 0;
+    if (Files.exists(file) && Files.size(file) > 0) {
+      try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+        if (input.readInt() != MAGIC) {
+          throw new IOException("File " + file + " is not a test state journal");
+        }
+        validLength = HEADER_SIZE;
+        long fileLength = Files.size(file);
+        while (true) {
+          byte[] payload = readRecord(input, fileLength - validLength);
+          if (payload == null) {
+            break;
+          }
+          readPayload(payload, states);
+          records++;
+          validLength += RECORD_HEADER_SIZE + payload.length;
+        }
+      } catch (EOFException e) {
+        // the file ends within the header, which is treated like an empty journal
+        validLength = 0;
+      }
+    }
+
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    try {
+      if (channel.size() > validLength) {
+        LOG.warn("Discarding {} bytes after the last valid record of test state journal {}",
+                 channel.size() - validLength, file);
+        channel.truncate(validLength);
+      }
+      if (validLength == 0) {
+        writeFully(channel, (ByteBuffer) ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).flip());
+      }
+      channel.position(channel.size());
+      channel.force(true);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    return new TestStateJournal(file, states, channel, records);
+  }
+
+  /**
+   * @return the latest state of every test, by test name
+   */
+  public synchronized Map<String, String> getStates() {
+    return Collections.unmodifiableMap(new TreeMap<>(states));
+  }
+
+  /**
+   * Sets the states of the given tests, and compacts the journal so that it holds all of them.
+   */
+  public synchronized void putAll(Map<String, String> states) throws IOException {
+    this.states.putAll(states);
+    compact();
+  }
+
+  /**
+   * Appends the state of the given test and syncs it to disk. Compacts the journal if it grew large enough.
+   */
+  public synchronized void append(String testName, String state) throws IOException {
+    states.put(testName, state);
+    writeFully(channel, encodeRecord(testName, state));
+    channel.force(false);
+    records++;
+    if (records > Math.max(MIN_RECORDS_TO_COMPACT, COMPACTION_FACTOR * states.size())) {
+      compact();
+    }
+  }
+
+  /**
+   * Replaces the journal with one that only has the latest state of every test.
+   */
+  public synchronized void compact() throws IOException {
+    Path tmp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+    try {
+      try (FileChannel tmpChannel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+        writeFully(tmpChannel, (ByteBuffer) ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).flip());
+        for (Map.Entry<String, String> entry : states.entrySet()) {
+          writeFully(tmpChannel, encodeRecord(entry.getKey(), entry.getValue()));
+        }
+        tmpChannel.force(true);
+      }
+      channel.close();
+      try {
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        records = states.size();
+      } finally {
+        // the old journal is still complete if it could not be replaced, so appending can continue either way
+        channel = FileChannel.open(file, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+      }
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Reads the next record, and returns its payload, or {@code null} if there is no complete and valid record left.
+   */
+  private static byte[] readRecord(DataInputStream input, long remaining) throws IOException {
+    if (remaining < RECORD_HEADER_SIZE) {
+      return null;
+    }
+    int length = input.readInt();
+    int checksum = input.readInt();
+    if (length < 0 || length > remaining - RECORD_HEADER_SIZE) {
+      return null;
+    }
+    byte[] payload = new byte[length];
+    input.readFully(payload);
+    return checksum(payload) == checksum ? payload : null;
+  }
+
+  private static void readPayload(byte[] payload, Map<String, String> states) throws IOException {
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+    String testName = input.readUTF();
+    states.put(testName, new String(readRemaining(input), StandardCharsets.UTF_8));
+  }
+
+  private static byte[] readRemaining(InputStream input) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int len = input.read(buffer);
+    while (len >= 0) {
+      output.write(buffer, 0, len);
+      len = input.read(buffer);
+    }
+    return output.toByteArray();
+  }
+
+  private static ByteBuffer encodeRecord(String testName, String state) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream payload = new DataOutputStream(bytes);
+    payload.writeUTF(testName);
+    payload.write(state.getBytes(StandardCharsets.UTF_8));
+    payload.flush();
+    byte[] payloadBytes = bytes.toByteArray();
+
+    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payloadBytes.length);
+    record.putInt(payloadBytes.length).putInt(checksum(payloadBytes)).put(payloadBytes);
+    record.flip();
+    return record;
+  }
+
+  private static int checksum(byte[] bytes) {
+    CRC32 crc = new CRC32();
+    crc.update(bytes, 0, bytes.length);
+    return (int) crc.getValue();
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test.shared;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+
+/**
+ * Holds the states of long running tests, in json format by test name, for all tests of the JVM. If it has a
+ * {@link TestStateJournal}, every update is also appended to the journal.
+ *
+ * Tests may run concurrently, each in a worker of the AutoSuiteRunner which loads the test classes with its own
+ * ClassLoader. Classes of this package are always loaded by the parent ClassLoader, so all workers and the suite
+ * share this store. Its methods must therefore only take and return JDK types.
+ */
+public final class TestStateStore {
+
+  private static final ConcurrentMap<String, String> STATES = new ConcurrentHashMap<>();
+  @Nullable
+  private static volatile TestStateJournal journal;
+
+  private TestStateStore() {
+  }
+
+  /**
+   * Replaces all states with the given ones.
+   *
+   * @param journal the journal to write all states and later updates to, or {@code null} to only keep them in memory
+   */
+  public static void initialize(Map<String, String> states, @Nullable TestStateJournal journal) throws IOException {
+    STATES.clear();
+    STATES.putAll(states);
+    if (journal != null) {
+      journal.putAll(states);
+    }
+    TestStateStore.journal = journal;
+  }
+
+  /**
+   * @return the state of the given test, or {@code null} if there is none
+   */
+  @Nullable
+  public static String get(String testName) {
+    return STATES.get(testName);
+  }
+
+  /**
+   * Sets the state of the given test, and appends it to the journal if there is one.
+   */
+  public static void put(String testName, String state) throws IOException {
+    STATES.put(testName, state);
+    TestStateJournal journal = TestStateStore.journal;
+    if (journal != null) {
+      journal.append(testName, state);
+    }
+  }
+
+  /**
+   * @return a copy of all states, sorted by test name
+   */
+  public static SortedMap<String, String> snapshot() {
+    return Collections.unmodifiableSortedMap(new TreeMap<>(STATES));
+  }
+}
@@ -22,7 +22,7 @@ import io.cdap.cdap.api.dataset.table.Table;
 
 /**
  * DataCleansing Application which extends {@link DataCleansing} to assert using
- * readless table instead of metrics.
+ * readless table instead of metrics, and a service to read the records instead of Explore.
  */
 public class DataCleansingApp extends DataCleansing {
   /**
@@ -41,6 +41,7 @@ public class DataCleansingApp extends DataCleansing {
   public void configure() {
     super.configure();
     this.addMapReduce(new DataCleansingMapReduce());
+    addService(new DataCleansingVerificationService());
     createDataset(TOTAL_RECORDS_TABLE, KeyValueTable.class, DatasetProperties.builder()
       .add(Table.PROPERTY_READLESS_INCREMENT, "true").build());
   }
@@ -17,7 +17,6 @@
 package io.cdap.cdap.longrunning.datacleansing;
 
 import com.google.common.collect.ImmutableMap;
-import com.google.gson.JsonParser;
 import io.cdap.cdap.api.ProgramLifecycle;
 import io.cdap.cdap.api.ProgramStatus;
 import io.cdap.cdap.api.Resources;
@@ -53,6 +52,8 @@ public class DataCleansingMapReduce extends AbstractMapReduce {
   protected static final String NAME = "DataCleansingMapReduce";
   protected static final String OUTPUT_PARTITION_KEY = "output.partition.key";
   protected static final String SCHEMA_KEY = "schema.key";
+  // number of records after which the mapper adds its counts to the total records table, 0 to add them only once
+  protected static final String COUNTS_FLUSH_THRESHOLD_KEY = "counts.flush.threshold";
 
   private PartitionBatchInput.BatchPartitionCommitter partitionCommitter;
 
@@ -96,6 +97,10 @@ public class DataCleansingMapReduce extends AbstractMapReduce {
     if (schemaJson != null) {
       job.getConfiguration().set(SCHEMA_KEY, schemaJson);
     }
+    String flushThreshold = context.getRuntimeArguments().get(COUNTS_FLUSH_THRESHOLD_KEY);
+    if (flushThreshold != null) {
+      job.getConfiguration().set(COUNTS_FLUSH_THRESHOLD_KEY, flushThreshold);
+    }
   }
 
   @Override
@@ -109,19 +114,57 @@ public class DataCleansingMapReduce extends AbstractMapReduce {
    */
   public static final class TimeAndZipPartitioner extends DynamicPartitioner<NullWritable, Text> {
 
+    // there are only a few zip codes in the records, but the number of keys kept is bounded nonetheless
+    private static final int MAX_CACHED_KEYS = 1024;
+
+    private final Map<Integer, PartitionKey> partitionKeys = new HashMap<>();
     private Long time;
-    private JsonParser jsonParser;
+    private SimpleSchemaMatcher schemaMatcher;
+    private int zipField;
 
     @Override
     public void initialize(MapReduceTaskContext<NullWritable, Text> mapReduceTaskContext) {
       this.time = Long.valueOf(mapReduceTaskContext.getRuntimeArguments().get(OUTPUT_PARTITION_KEY));
-      this.jsonParser = new JsonParser();
+      // the zip is read with the schema of the mapper, so keys are decoded the same way as when records were matched
+      String schemaJson = mapReduceTaskContext.getRuntimeArguments().get(SCHEMA_KEY);
+      try {
+        this.schemaMatcher = new SimpleSchemaMatcher(schemaJson == null ? SchemaMatchingFilter.DEFAULT_SCHEMA
+                                                       : Schema.parseJson(schemaJson));
+      } catch (IOException e) {
+        throw new IllegalArgumentException("Invalid schema: " + schemaJson, e);
+      }
+      this.zipField = schemaMatcher.getFieldIndex("zip");
+      if (zipField < 0) {
+        throw new IllegalArgumentException("Schema does not have a zip field: " + schemaJson);
+      }
     }
 
     @Override
     public PartitionKey getPartitionKey(NullWritable key, Text value) {
-      int zip = jsonParser.parse(value.toString()).getAsJsonObject().get("zip").getAsInt();
-      return PartitionKey.builder().addLongField("time", time).addIntField("zip", zip).build();
+      int zip = getZip(value);
+      PartitionKey partitionKey = partitionKeys.get(zip);
+      if (partitionKey == null) {
+        partitionKey = PartitionKey.builder().addLongField("time", time).addIntField("zip", zip).build();
+        if (partitionKeys.size() < MAX_CACHED_KEYS) {
+          partitionKeys.put(zip, partitionKey);
+        }
+      }
+      return partitionKey;
+    }
+
+    /**
+     * Reads the zip field of a record that matched the schema already, so its zip is an int, either as a number or
+     * as a string.
+     */
+    private int getZip(Text value) {
+      String zip = null;
+      if (schemaMatcher.match(value.getBytes(), 0, value.getLength()) == SimpleSchemaMatcher.Result.MATCH) {
+        zip = schemaMatcher.getValue(zipField);
+      }
+      if (zip == null) {
+        throw new IllegalArgumentException("Record does not have a valid zip field: " + value);
+      }
+      return Integer.parseInt(zip);
     }
   }
 
@@ -140,6 +183,10 @@ public class DataCleansingMapReduce extends AbstractMapReduce {
     @UseDataSet(DataCleansingApp.TOTAL_RECORDS_TABLE)
     private KeyValueTable totalRecords;
     private MapReduceTaskContext<NullWritable, Text> mapReduceTaskContext;
+    // counts which were not added to the total records table yet
+    private long cleanRecords;
+    private long invalidRecords;
+    private long flushThreshold;
 
     @Override
     public void initialize(MapReduceTaskContext<NullWritable, Text> context) throws Exception {
@@ -159,16 +206,40 @@ public class DataCleansingMapReduce extends AbstractMapReduce {
       } else {
         schemaMatcher = new SimpleSchemaMatcher(Schema.parseJson(schemaJson));
       }
+      flushThreshold = context.getConfiguration().getLong(COUNTS_FLUSH_THRESHOLD_KEY, 10000L);
+    }
+
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+      flushCounts();
     }
 
     public void map(LongWritable key, Text data, MapReduceTaskContext<NullWritable, Text> context)
       throws IOException, InterruptedException {
-      if (!schemaMatcher.matches(data.toString())) {
+      // Text keeps its UTF-8 bytes, so they are matched without decoding them to a String
+      if (schemaMatcher.match(data.getBytes(), 0, data.getLength()) != SimpleSchemaMatcher.Result.MATCH) {
         context.write(DataCleansingApp.INVALID_RECORDS, NullWritable.get(), data);
-        totalRecords.increment(DataCleansingApp.INVALID_RECORD_KEY, 1);
+        invalidRecords++;
       } else {
         context.write(DataCleansingApp.CLEAN_RECORDS, NullWritable.get(), data);
-        totalRecords.increment(DataCleansingApp.CLEAN_RECORD_KEY, 1);
+        cleanRecords++;
+      }
+      if (flushThreshold > 0 && cleanRecords + invalidRecords >= flushThreshold) {
+        flushCounts();
+      }
+    }
+
+    /**
+     * Adds the counts of the records mapped since the last flush to the total records table.
+     */
+    private void flushCounts() {
+      if (cleanRecords > 0) {
+        totalRecords.increment(DataCleansingApp.CLEAN_RECORD_KEY, cleanRecords);
+        cleanRecords = 0;
+      }
+      if (invalidRecords > 0) {
+        totalRecords.increment(DataCleansingApp.INVALID_RECORD_KEY, invalidRecords);
+        invalidRecords = 0;
       }
     }
 
@@ -16,30 +16,36 @@
 
 package io.cdap.cdap.longrunning.datacleansing;
 
-import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.net.HttpHeaders;
 import com.google.gson.Gson;
 import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.dataset.lib.KeyValueTable;
-import io.cdap.cdap.client.QueryClient;
+import io.cdap.cdap.client.config.ClientConfig;
 import io.cdap.cdap.common.UnauthenticatedException;
-import io.cdap.cdap.explore.client.ExploreExecutionResult;
+import io.cdap.cdap.proto.ProgramRecord;
 import io.cdap.cdap.proto.ProgramRunStatus;
-import io.cdap.cdap.proto.QueryResult;
+import io.cdap.cdap.proto.ProgramType;
 import io.cdap.cdap.proto.RunRecord;
 import io.cdap.cdap.proto.id.DatasetId;
+import io.cdap.cdap.security.authentication.client.AccessToken;
 import io.cdap.cdap.security.spi.authorization.UnauthorizedException;
 import io.cdap.cdap.test.ApplicationManager;
 import io.cdap.cdap.test.LongRunningTestBase;
 import io.cdap.cdap.test.ServiceManager;
+import io.cdap.common.ContentProvider;
 import io.cdap.common.http.HttpRequest;
 import io.cdap.common.http.HttpResponse;
 import org.junit.Assert;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -47,13 +53,21 @@ import java.util.concurrent.TimeUnit;
  * Data Cleansing long running test
  */
 public class DataCleansingTest extends LongRunningTestBase<DataCleansingTestState> {
-  private static final int CLEAN_RECORDS_PER_BATCH = 70;
-  private static final int INVALID_RECORDS_PER_BATCH = 30;
+  // number of records written per batch, and the fraction of them which don't match the schema
+  private static final long RECORDS_PER_BATCH = Long.getLong("datacleansing.test.records", 100L);
+  private static final double INVALID_RATIO =
+    Double.parseDouble(System.getProperty("datacleansing.test.invalid.ratio", "0.3"));
+  private static final long INVALID_RECORDS_PER_BATCH = Math.round(RECORDS_PER_BATCH * INVALID_RATIO);
+  private static final long CLEAN_RECORDS_PER_BATCH = RECORDS_PER_BATCH - INVALID_RECORDS_PER_BATCH;
+  // smaller than a batch by default, so that the totals are checked across periodic and final flushes of the counts
+  private static final String COUNTS_FLUSH_THRESHOLD =
+    System.getProperty("datacleansing.test.counts.flush.threshold", "30");
 
   private static final String DATACLEANSING_MAPREDUCE_NAME = "DataCleansingMapReduce";
   private static final String DATACLEANSING_NAME = "DataCleansing";
   private static final String OUTPUT_PARTITION_KEY = "output.partition.key";
   private static final String SCHEMA_KEY = "schema.key";
+  private static final String COUNTS_FLUSH_THRESHOLD_KEY = "counts.flush.threshold";
   private static final String SCHEMAJSON = DataCleansingMapReduce.SchemaMatchingFilter.DEFAULT_SCHEMA.toString();
 
   private static final String CLEAN_RECORDS_DATASET = "cleanRecords";
@@ -72,13 +86,16 @@ public class DataCleansingTest extends LongRunningTestBase<DataCleansingTestStat
     serviceManager.waitForRun(ProgramRunStatus.RUNNING, 5, TimeUnit.SECONDS);
     // wait for it to be available
     serviceManager.getServiceURL(PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    getVerificationServiceURL();
   }
 
   @Override
   public void stop() throws Exception {
-    ServiceManager serviceManager = getApplicationManager().getServiceManager(DataCleansingService.NAME);
-    serviceManager.stop();
-    serviceManager.waitForRun(ProgramRunStatus.KILLED, 5, TimeUnit.SECONDS);
+    for (String service : new String[] { DataCleansingService.NAME, DataCleansingVerificationService.NAME }) {
+      ServiceManager serviceManager = getApplicationManager().getServiceManager(service);
+      serviceManager.stop();
+      serviceManager.waitForRun(ProgramRunStatus.KILLED, 5, TimeUnit.SECONDS);
+    }
   }
 
   @Override
@@ -98,7 +115,7 @@ public class DataCleansingTest extends LongRunningTestBase<DataCleansingTestStat
     Assert.assertEquals(state.getEndInvalidRecordPid(), getTotalRecords(true) + getTotalRecords(false));
 
     // verify segregated records
-    Assert.assertTrue(verifyRecordsWithExplore(state));
+    verifyRecords(state);
     return state;
   }
 
@@ -112,17 +129,21 @@ public class DataCleansingTest extends LongRunningTestBase<DataCleansingTestStat
     ServiceManager serviceManager = applicationManager.getServiceManager(DataCleansingService.NAME);
     URL serviceURL = serviceManager.getServiceURL(PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
-    LOG.info("Writing {} events in one batch", CLEAN_RECORDS_PER_BATCH + INVALID_RECORDS_PER_BATCH);
+    LOG.info("Writing {} events in one batch, {} of them invalid", RECORDS_PER_BATCH, INVALID_RECORDS_PER_BATCH);
     // write a set of records to one partition and run the DataCleansingMapReduce job on that one partition
     createPartition(serviceURL, state);
     long now = System.currentTimeMillis();
     ImmutableMap<String, String> args = ImmutableMap.of(OUTPUT_PARTITION_KEY, Long.toString(now),
-                                                        SCHEMA_KEY, SCHEMAJSON);
+                                                        SCHEMA_KEY, SCHEMAJSON,
+                                                        COUNTS_FLUSH_THRESHOLD_KEY, COUNTS_FLUSH_THRESHOLD);
     List<RunRecord> history = applicationManager.getMapReduceManager(DATACLEANSING_MAPREDUCE_NAME).getHistory();
+    long mapReduceStart = System.nanoTime();
     applicationManager.getMapReduceManager(DATACLEANSING_MAPREDUCE_NAME).start(args);
     applicationManager.getMapReduceManager(DATACLEANSING_MAPREDUCE_NAME).waitForRuns(ProgramRunStatus.COMPLETED,
                                                                                      history.size() + 1,
                                                                                      5, TimeUnit.MINUTES);
+    recordSample("mapreduce.millis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - mapReduceStart),
+                 Direction.LOWER_IS_BETTER);
 
     return new DataCleansingTestState(now, state.getEndInvalidRecordPid() + 1,
                                       state.getEndInvalidRecordPid() + CLEAN_RECORDS_PER_BATCH,
@@ -134,23 +155,17 @@ public class DataCleansingTest extends LongRunningTestBase<DataCleansingTestStat
   private void createPartition(URL serviceUrl, DataCleansingTestState state)
     throws IOException, UnauthenticatedException, UnauthorizedException {
     URL url = new URL(serviceUrl, "v1/records/raw");
-    List<String> records = new ArrayList<>();
-    generateRecords(records, state.getEndInvalidRecordPid() + 1, false);
-    generateRecords(records, state.getEndInvalidRecordPid() + CLEAN_RECORDS_PER_BATCH + 1, true);
-    String body = Joiner.on("\n").join(records) + "\n";
-    HttpRequest request = HttpRequest.post(url).withBody(body).build();
+    long startPid = state.getEndInvalidRecordPid() + 1;
+    // the body is generated while it is sent, so that the size of a batch is not bounded by memory
+    HttpRequest request = HttpRequest.post(url)
+      .withBody((ContentProvider<InputStream>) () -> new RecordStream(startPid, startPid + CLEAN_RECORDS_PER_BATCH,
+                                                                      startPid + RECORDS_PER_BATCH - 1))
+      .build();
     HttpResponse response = getRestClient().execute(request, getClientConfig().getAccessToken());
     Assert.assertEquals(200, response.getResponseCode());
   }
 
-  private void generateRecords(List<String> records, long start, boolean invalid) {
-    long numRecords = invalid ? INVALID_RECORDS_PER_BATCH : CLEAN_RECORDS_PER_BATCH;
-    for (long i = start; i < (start + numRecords); i++) {
-      records.add(getRecord(i, invalid));
-    }
-  }
-
-  private String getRecord(long index, boolean invalid) {
+  private static String getRecord(long index, boolean invalid) {
     String zip = invalid ? "84125q" : "84125";
     return GSON.toJson(new Person(index, "bob", "02-12-1983", zip));
   }
@@ -163,40 +178,137 @@ public class DataCleansingTest extends LongRunningTestBase<DataCleansingTestStat
     return readLong(totalRecordsTable.read(recordKey));
   }
 
-  // TODO: Use service instead of explore as Explore is slower
-  private boolean verifyRecordsWithExplore(DataCleansingTestState state) throws Exception {
-    QueryClient queryClient = new QueryClient(getClientConfig());
-    String cleanRecordsQuery = "SELECT * FROM dataset_" + CLEAN_RECORDS_DATASET + " where TIME = "
-      + state.getTimestamp();
-    String invalidRecordsQuery = "SELECT * FROM dataset_" + INVALID_RECORDS_DATASET + " where TIME = "
-      + state.getTimestamp();
-
-    // Reduce wait time by submitting both the queries
-    ListenableFuture<ExploreExecutionResult> cleanRecordsExecute =
-      queryClient.execute(getLongRunningNamespace(), cleanRecordsQuery);
-    ListenableFuture<ExploreExecutionResult> invalidRecordsExecute =
-      queryClient.execute(getLongRunningNamespace(), invalidRecordsQuery);
-    ExploreExecutionResult cleanRecordsResult = cleanRecordsExecute.get();
-    ExploreExecutionResult invalidRecordsResult = invalidRecordsExecute.get();
-
-    return (verifyResults(cleanRecordsResult, state.getStartCleanRecordPid(), false) &&
-      verifyResults(invalidRecordsResult, state.getStartInvalidRecordPid(), true));
-  }
-
-  private boolean verifyResults(ExploreExecutionResult result, long index, boolean invalid) {
-    while (result.hasNext()) {
-      QueryResult next = result.next();
-      List<Object> columns = next.getColumns();
-      String expectedRecord = getRecord(index, invalid);
-      if (!expectedRecord.equalsIgnoreCase((String) columns.get(0))) {
-        return false;
+  /**
+   * Returns the URL of the verification service, and starts it if it is not running. It is also deployed if the
+   * application was deployed before it had that service.
+   */
+  private URL getVerificationServiceURL() throws Exception {
+    boolean deployed = false;
+    for (ProgramRecord program : getApplicationClient().listPrograms(getLongRunningNamespace().app(DATACLEANSING_NAME),
+                                                                     ProgramType.SERVICE)) {
+      deployed = deployed || DataCleansingVerificationService.NAME.equals(program.getName());
+    }
+    if (!deployed) {
+      deploy();
+    }
+    ServiceManager serviceManager = getApplicationManager().getServiceManager(DataCleansingVerificationService.NAME);
+    if (!serviceManager.isRunning()) {
+      serviceManager.start();
+      serviceManager.waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+    return serviceManager.getServiceURL(PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+  }
+
+  private void verifyRecords(DataCleansingTestState state) throws Exception {
+    // there are no records before the first run of the MapReduce
+    if (state.getTimestamp() == 0) {
+      return;
+    }
+    URL serviceURL = getVerificationServiceURL();
+    verifyRecords(serviceURL, CLEAN_RECORDS_DATASET, state.getTimestamp(),
+                  state.getStartCleanRecordPid(), state.getEndCleanRecordPid(), false);
+    verifyRecords(serviceURL, INVALID_RECORDS_DATASET, state.getTimestamp(),
+                  state.getStartInvalidRecordPid(), state.getEndInvalidRecordPid(), true);
+  }
+
+  /**
+   * Verifies that the given dataset has exactly the records from the start to the end pid for the given time,
+   * in any order. The records are checked as they are read, so that the response is never held in memory.
+   */
+  private void verifyRecords(URL serviceURL, String datasetName, long timestamp, long startPid, long endPid,
+                             boolean invalid) throws Exception {
+    URL url = new URL(serviceURL, String.format("v1/records/%s/%d", datasetName, timestamp));
+    ClientConfig clientConfig = getClientConfig();
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setConnectTimeout(clientConfig.getDefaultConnectTimeout());
+    connection.setReadTimeout(clientConfig.getDefaultReadTimeout());
+    AccessToken accessToken = clientConfig.getAccessToken();
+    if (accessToken != null) {
+      connection.setRequestProperty(HttpHeaders.AUTHORIZATION,
+                                    accessToken.getTokenType() + " " + accessToken.getValue());
+    }
+
+    BitSet seen = new BitSet();
+    try {
+      Assert.assertEquals(200, connection.getResponseCode());
+      try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(),
+                                                                            StandardCharsets.UTF_8))) {
+        String line = reader.readLine();
+        while (line != null) {
+          long pid = GSON.fromJson(line, Person.class).getPid();
+          Assert.assertTrue(String.format("Unexpected record in %s: %s", datasetName, line),
+                            pid >= startPid && pid <= endPid);
+          Assert.assertEquals(getRecord(pid, invalid), line);
+          int index = (int) (pid - startPid);
+          Assert.assertFalse(String.format("Duplicate record in %s: %s", datasetName, line), seen.get(index));
+          seen.set(index);
+          line = reader.readLine();
+        }
       }
-      index++;
+    } finally {
+      connection.disconnect();
     }
-    return true;
+    Assert.assertEquals(String.format("Number of records in %s", datasetName), endPid - startPid + 1,
+                        seen.cardinality());
   }
 
   private long readLong(byte[] bytes) {
     return bytes == null ? 0 : Bytes.toLong(bytes);
   }
+
+  /**
+   * Generates the records of a batch, one line each, as they are read. The clean records come first, followed by
+   * the invalid records.
+   */
+  private static final class RecordStream extends InputStream {
+    private final long startInvalidPid;
+    private final long endPid;
+    private long nextPid;
+    private byte[] record = new byte[0];
+    private int position;
+
+    RecordStream(long startPid, long startInvalidPid, long endPid) {
+      this.startInvalidPid = startInvalidPid;
+      this.endPid = endPid;
+      this.nextPid = startPid;
+    }
+
+    @Override
+    public int read() {
+      return nextRecord() ? record[position++] & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      int read = 0;
+      while (read < length && nextRecord()) {
+        int count = Math.min(length - read, record.length - position);
+        System.arraycopy(record, position, buffer, offset + read, count);
+        position += count;
+        read += count;
+      }
+      return read == 0 ? -1 : read;
+    }
+
+    /**
+     * Generates the next record once the current one was read.
+     *
+     * @return false if all records were read
+     */
+    private boolean nextRecord() {
+      if (position < record.length) {
+        return true;
+      }
+      if (nextPid > endPid) {
+        return false;
+      }
+      record = (getRecord(nextPid, nextPid >= startInvalidPid) + "\n").getBytes(StandardCharsets.UTF_8);
+      position = 0;
+      nextPid++;
+      return true;
+    }
+  }
 }
@@ -0,0 +1,168 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.longrunning.datacleansing;
+
+import io.cdap.cdap.api.Transactional;
+import io.cdap.cdap.api.dataset.lib.PartitionDetail;
+import io.cdap.cdap.api.dataset.lib.PartitionFilter;
+import io.cdap.cdap.api.dataset.lib.PartitionedFileSet;
+import io.cdap.cdap.api.service.AbstractService;
+import io.cdap.cdap.api.service.Service;
+import io.cdap.cdap.api.service.http.AbstractHttpServiceHandler;
+import io.cdap.cdap.api.service.http.HttpContentProducer;
+import io.cdap.cdap.api.service.http.HttpServiceRequest;
+import io.cdap.cdap.api.service.http.HttpServiceResponder;
+import org.apache.twill.filesystem.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+
+/**
+ * A {@link Service} to read the records that the {@link DataCleansingMapReduce} wrote, so that they can be verified
+ * without Explore. The records are streamed from the files of the partitions, rather than loaded into memory.
+ */
+public class DataCleansingVerificationService extends AbstractService {
+
+  public static final String NAME = "DataCleansingVerificationService";
+
+  @Override
+  protected void configure() {
+    setName(NAME);
+    setDescription("A service to read the clean and invalid records.");
+    addHandler(new VerificationHandler());
+  }
+
+  /**
+   * A handler that returns the records of the 'cleanRecords' or 'invalidRecords' partitions of a given time.
+   */
+  @Path("/v1")
+  public static class VerificationHandler extends AbstractHttpServiceHandler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(VerificationHandler.class);
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    @GET
+    @Path("/records/{dataset}/{time}")
+    public void read(HttpServiceRequest request, HttpServiceResponder responder,
+                     @PathParam("dataset") String datasetName, @PathParam("time") long time) throws IOException {
+      if (!DataCleansingApp.CLEAN_RECORDS.equals(datasetName)
+        && !DataCleansingApp.INVALID_RECORDS.equals(datasetName)) {
+        responder.sendError(404, String.format("Dataset '%s' does not have records to verify", datasetName));
+        return;
+      }
+      PartitionedFileSet records = getContext().getDataset(datasetName);
+      PartitionFilter filter = PartitionFilter.builder().addValueCondition("time", time).build();
+      // sorted, so that the records of a time are always returned in the same order
+      List<PartitionDetail> partitions = new ArrayList<>(records.getPartitions(filter));
+      Collections.sort(partitions, new Comparator<PartitionDetail>() {
+        @Override
+        public int compare(PartitionDetail p1, PartitionDetail p2) {
+          return p1.getRelativePath().compareTo(p2.getRelativePath());
+        }
+      });
+      List<Location> files = new ArrayList<>();
+      for (PartitionDetail partition : partitions) {
+        files.addAll(getDataFiles(partition.getLocation()));
+      }
+      responder.send(200, new FilesProducer(files), "text/plain");
+    }
+
+    private static List<Location> getDataFiles(Location dir) throws IOException {
+      List<Location> files = new ArrayList<>();
+      for (Location file : dir.list()) {
+        // skips markers such as _SUCCESS, and hidden files such as checksums
+        if (!file.getName().startsWith("_") && !file.getName().startsWith(".") && !file.isDirectory()) {
+          files.add(file);
+        }
+      }
+      Collections.sort(files, new Comparator<Location>() {
+        @Override
+        public int compare(Location l1, Location l2) {
+          return l1.getName().compareTo(l2.getName());
+        }
+      });
+      return files;
+    }
+
+    /**
+     * Streams the content of files one after the other, one chunk at a time.
+     */
+    private static final class FilesProducer extends HttpContentProducer {
+      private final Iterator<Location> files;
+      private InputStream input;
+
+      private FilesProducer(List<Location> files) {
+        this.files = files.iterator();
+      }
+
+      @Override
+      public ByteBuffer nextChunk(Transactional transactional) throws Exception {
+        while (true) {
+          if (input == null) {
+            if (!files.hasNext()) {
+              return ByteBuffer.allocate(0);
+            }
+            input = files.next().getInputStream();
+          }
+          // a new buffer for every chunk, since the previous one may not be written out yet
+          byte[] buffer = new byte[CHUNK_SIZE];
+          int len = input.read(buffer);
+          if (len > 0) {
+            return ByteBuffer.wrap(buffer, 0, len);
+          }
+          if (len < 0) {
+            input.close();
+            input = null;
+          }
+        }
+      }
+
+      @Override
+      public void onFinish() throws Exception {
+        close();
+      }
+
+      @Override
+      public void onError(Throwable failureCause) {
+        LOG.warn("Failed to stream records", failureCause);
+        try {
+          close();
+        } catch (IOException e) {
+          LOG.warn("Failed to close input stream", e);
+        }
+      }
+
+      private void close() throws IOException {
+        if (input != null) {
+          input.close();
+          input = null;
+        }
+      }
+    }
+  }
+}
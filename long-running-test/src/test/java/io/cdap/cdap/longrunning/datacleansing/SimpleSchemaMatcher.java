@@ -16,23 +16,101 @@
 
 package io.cdap.cdap.longrunning.datacleansing;
 
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
 
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nullable;
 
 /**
  * A schema matcher for flat-record schemas with simple (or nullable of simple) fields.
+ *
+ * The schema is compiled once, and records are matched by scanning their JSON in place, without building objects
+ * for them. A record matches if it is a JSON object whose values can be converted to the types of their fields, as
+ * {@link io.cdap.cdap.api.data.format.StructuredRecord.Builder#convertAndSet(String, String)} would. As when the
+ * record is parsed with Gson, only the last value of a duplicate key counts. Unlike Gson, which reads the string
+ * value of an array with a single element, the matcher rejects arrays, and only strict JSON is recognized. Since the
+ * matcher keeps the state of the record being matched, it must not be shared by threads.
  */
 public class SimpleSchemaMatcher {
 
-  private final Schema schema;
+  /**
+   * The outcome of matching a record.
+   */
+  public enum Result {
+    MATCH,
+    // the record is not a well-formed JSON object
+    MALFORMED,
+    // the record has a field which is not in the schema
+    UNKNOWN_FIELD,
+    // a non-nullable field of the schema is missing from the record
+    MISSING_FIELD,
+    // a value can't be converted to the type of its field, such as non-numerical characters in a numerical field
+    INVALID_VALUE,
+    // the record has a field whose type is not simple
+    UNSUPPORTED_TYPE
+  }
+
+  private static final byte[] TRUE = "true".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] FALSE = "false".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] NULL = "null".getBytes(StandardCharsets.UTF_8);
+
+  private final byte[][] names;
+  // null for fields which don't have a simple type
+  private final Schema.Type[] types;
+  private final boolean[] nullable;
+  private final boolean[] present;
+  // the result and position of the last value of each present field
+  private final Result[] results;
+  private final int[] valuePositions;
+  // whether the last record matched, which is when its values can be read
+  private boolean matched;
+
+  // the record being matched
+  private byte[] data;
+  private int position;
+  private int end;
+
+  // the last string or literal read, which is either in the record, or in the scratch buffer if it had escapes
+  private byte[] token;
+  private int tokenStart;
+  private int tokenEnd;
+  private byte[] scratch = new byte[64];
 
   public SimpleSchemaMatcher(Schema schema) {
-    this.schema = schema;
+    List<Schema.Field> fields = schema.getFields();
+    if (schema.getType() != Schema.Type.RECORD || fields == null) {
+      throw new IllegalArgumentException("Schema must be a record schema: " + schema);
+    }
+    this.names = new byte[fields.size()][];
+    this.types = new Schema.Type[fields.size()];
+    this.nullable = new boolean[fields.size()];
+    this.present = new boolean[fields.size()];
+    this.results = new Result[fields.size()];
+    this.valuePositions = new int[fields.size()];
+    for (int i = 0; i < fields.size(); i++) {
+      Schema fieldSchema = fields.get(i).getSchema();
+      names[i] = fields.get(i).getName().getBytes(StandardCharsets.UTF_8);
+      nullable[i] = fieldSchema.isNullable();
+      types[i] = getSimpleType(nullable[i] ? fieldSchema.getNonNullable() : fieldSchema);
+    }
+  }
+
+  @Nullable
+  private static Schema.Type getSimpleType(Schema schema) {
+    switch (schema.getType()) {
+      case BOOLEAN:
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+      case BYTES:
+      case STRING:
+        return schema.getType();
+      default:
+        return null;
+    }
   }
 
   /**
@@ -46,17 +124,549 @@ public class SimpleSchemaMatcher {
    * @return true if the schema matches the given data
    */
   public boolean matches(String data) {
-    // rely on validations in the StructuredRecord's builder
-    try {
-      JsonObject jsonObject = new JsonParser().parse(data).getAsJsonObject();
-      StructuredRecord.Builder builder = StructuredRecord.builder(schema);
-      for (Map.Entry<String, JsonElement> entry : jsonObject.entrySet()) {
-        builder.convertAndSet(entry.getKey(), entry.getValue().getAsString());
+    byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+    return match(bytes, 0, bytes.length) == Result.MATCH;
+  }
+
+  /**
+   * Matches the UTF-8 encoded JSON record in the given range of bytes against this matcher's schema.
+   *
+   * @return {@link Result#MATCH} if the schema matches the record, or a reason why it does not
+   */
+  public Result match(byte[] data, int offset, int length) {
+    this.data = data;
+    this.position = offset;
+    this.end = offset + length;
+    this.matched = false;
+    Arrays.fill(present, false);
+
+    skipWhitespace();
+    if (!consume('{')) {
+      return Result.MALFORMED;
+    }
+    skipWhitespace();
+    if (!consume('}')) {
+      do {
+        skipWhitespace();
+        if (!consume('"') || !readString()) {
+          return Result.MALFORMED;
+        }
+        int field = getField();
+        if (field < 0) {
+          return Result.UNKNOWN_FIELD;
+        }
+        skipWhitespace();
+        if (!consume(':')) {
+          return Result.MALFORMED;
+        }
+        skipWhitespace();
+        valuePositions[field] = position;
+        Result result = matchValue(field);
+        if (result == Result.MALFORMED) {
+          return result;
+        }
+        // a later value of the same field replaces this one, so it is only checked once the record is read
+        results[field] = result;
+        present[field] = true;
+        skipWhitespace();
+      } while (consume(','));
+      if (!consume('}')) {
+        return Result.MALFORMED;
+      }
+    }
+    skipWhitespace();
+    if (position != end) {
+      return Result.MALFORMED;
+    }
+
+    for (int i = 0; i < present.length; i++) {
+      if (!present[i] && !nullable[i]) {
+        return Result.MISSING_FIELD;
+      }
+      if (present[i] && results[i] != Result.MATCH) {
+        return results[i];
+      }
+    }
+    matched = true;
+    return Result.MATCH;
+  }
+
+  /**
+   * Returns the index of the field with the given name, which is its position in the schema.
+   *
+   * @return the index of the field, or -1 if the schema has no such field
+   */
+  public int getFieldIndex(String name) {
+    byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+    for (int i = 0; i < names.length; i++) {
+      if (Arrays.equals(names[i], bytes)) {
+        return i;
       }
-      builder.build();
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the string value of a field in the last record, which must have matched. Escapes are decoded and, for
+   * duplicate keys, the last value is returned, as when the record is parsed with Gson.
+   *
+   * @param field the index of the field, as returned by {@link #getFieldIndex(String)}
+   * @return the value of the field, or null if the record does not have it
+   * @throws IllegalStateException if the last record did not match
+   */
+  @Nullable
+  public String getValue(int field) {
+    if (!matched) {
+      throw new IllegalStateException("The last record did not match the schema");
+    }
+    if (!present[field]) {
+      return null;
+    }
+    // the value is read again, since it may have been decoded into the scratch buffer, which is reused
+    position = valuePositions[field];
+    if (consume('"')) {
+      readString();
+    } else if (!readLiteral(TRUE) && !readLiteral(FALSE)) {
+      readNumber();
+    }
+    return new String(token, tokenStart, tokenEnd - tokenStart, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Reads the value at the current position and checks that it can be converted to the type of the given field.
+   */
+  private Result matchValue(int field) {
+    if (position == end) {
+      return Result.MALFORMED;
+    }
+    byte first = data[position];
+    if (first == '"') {
+      position++;
+      if (!readString()) {
+        return Result.MALFORMED;
+      }
+    } else if (first == '-' || (first >= '0' && first <= '9')) {
+      if (!readNumber()) {
+        return Result.MALFORMED;
+      }
+    } else if (first == '{' || first == '[') {
+      // objects and arrays don't have a string value to convert
+      return skipValue() ? Result.INVALID_VALUE : Result.MALFORMED;
+    } else if (!readLiteral(TRUE) && !readLiteral(FALSE)) {
+      // neither does null
+      return readLiteral(NULL) ? Result.INVALID_VALUE : Result.MALFORMED;
+    }
+
+    if (types[field] == null) {
+      return Result.UNSUPPORTED_TYPE;
+    }
+    switch (types[field]) {
+      case INT:
+        return isInteger(Integer.MIN_VALUE, Integer.MAX_VALUE) ? Result.MATCH : Result.INVALID_VALUE;
+      case LONG:
+        return isInteger(Long.MIN_VALUE, Long.MAX_VALUE) ? Result.MATCH : Result.INVALID_VALUE;
+      case FLOAT:
+      case DOUBLE:
+        return isDecimal() ? Result.MATCH : Result.INVALID_VALUE;
+      default:
+        // booleans, bytes and strings can be converted from any string
+        return Result.MATCH;
+    }
+  }
+
+  /**
+   * Returns the index of the field named by the current token, or -1 if the schema has no such field.
+   */
+  private int getField() {
+    int length = tokenEnd - tokenStart;
+    for (int i = 0; i < names.length; i++) {
+      byte[] name = names[i];
+      if (name.length != length) {
+        continue;
+      }
+      int j = 0;
+      while (j < length && name[j] == token[tokenStart + j]) {
+        j++;
+      }
+      if (j == length) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Reads a string whose opening quote was consumed already, up to and including its closing quote.
+   *
+   * @return false if the string is not terminated or has an invalid escape
+   */
+  private boolean readString() {
+    int start = position;
+    while (position < end && data[position] != '"' && data[position] != '\\') {
+      position++;
+    }
+    if (position == end) {
+      return false;
+    }
+    if (data[position] == '"') {
+      token = data;
+      tokenStart = start;
+      tokenEnd = position++;
       return true;
-    } catch (Exception e) {
+    }
+
+    // the string has escapes, so it is decoded into the scratch buffer, after the part without escapes
+    int length = position - start;
+    ensureScratch(length);
+    System.arraycopy(data, start, scratch, 0, length);
+    while (position < end && data[position] != '"') {
+      // an escape decodes to at most four bytes
+      ensureScratch(length + 4);
+      byte b = data[position++];
+      if (b != '\\') {
+        scratch[length++] = b;
+        continue;
+      }
+      if (position == end) {
+        return false;
+      }
+      b = data[position++];
+      switch (b) {
+        case '"':
+        case '\\':
+        case '/':
+          scratch[length++] = b;
+          break;
+        case 'b':
+          scratch[length++] = '\b';
+          break;
+        case 'f':
+          scratch[length++] = '\f';
+          break;
+        case 'n':
+          scratch[length++] = '\n';
+          break;
+        case 'r':
+          scratch[length++] = '\r';
+          break;
+        case 't':
+          scratch[length++] = '\t';
+          break;
+        case 'u':
+          int codePoint = readHex();
+          if (codePoint < 0) {
+            return false;
+          }
+          if (Character.isHighSurrogate((char) codePoint) && end - position >= 6
+            && data[position] == '\\' && data[position + 1] == 'u') {
+            int mark = position;
+            position += 2;
+            int low = readHex();
+            if (low >= 0 && Character.isLowSurrogate((char) low)) {
+              codePoint = Character.toCodePoint((char) codePoint, (char) low);
+            } else {
+              position = mark;
+            }
+          }
+          length = encodeUtf8(codePoint, length);
+          break;
+        default:
+          return false;
+      }
+    }
+    if (position == end) {
       return false;
     }
+    position++;
+    token = scratch;
+    tokenStart = 0;
+    tokenEnd = length;
+    return true;
+  }
+
+  /**
+   * Reads the four hex digits of a unicode escape.
+   *
+   * @return the decoded character, or -1 if the digits are invalid
+   */
+  private int readHex() {
+    if (end - position < 4) {
+      return -1;
+    }
+    int value = 0;
+    for (int i = 0; i < 4; i++) {
+      int digit = Character.digit(data[position++], 16);
+      if (digit < 0) {
+        return -1;
+      }
+      value = (value << 4) | digit;
+    }
+    return value;
+  }
+
+  private int encodeUtf8(int codePoint, int length) {
+    if (codePoint < 0x80) {
+      scratch[length++] = (byte) codePoint;
+    } else if (codePoint < 0x800) {
+      scratch[length++] = (byte) (0xc0 | (codePoint >> 6));
+      scratch[length++] = (byte) (0x80 | (codePoint & 0x3f));
+    } else if (Character.isSurrogate((char) codePoint)) {
+      // unpaired surrogates are replaced, as when encoding a String
+      scratch[length++] = '?';
+    } else if (codePoint < 0x10000) {
+      scratch[length++] = (byte) (0xe0 | (codePoint >> 12));
+      scratch[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+      scratch[length++] = (byte) (0x80 | (codePoint & 0x3f));
+    } else {
+      scratch[length++] = (byte) (0xf0 | (codePoint >> 18));
+      scratch[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+      scratch[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+      scratch[length++] = (byte) (0x80 | (codePoint & 0x3f));
+    }
+    return length;
+  }
+
+  private void ensureScratch(int length) {
+    if (scratch.length < length) {
+      scratch = Arrays.copyOf(scratch, Math.max(length, scratch.length * 2));
+    }
+  }
+
+  /**
+   * Skips the value at the current position, including any values nested in it.
+   *
+   * @return false if the value is not well-formed
+   */
+  private boolean skipValue() {
+    if (position == end) {
+      return false;
+    }
+    byte first = data[position];
+    if (consume('"')) {
+      return readString();
+    }
+    if (first == '-' || (first >= '0' && first <= '9')) {
+      return readNumber();
+    }
+    if (consume('{')) {
+      return skipElements('}', true);
+    }
+    if (consume('[')) {
+      return skipElements(']', false);
+    }
+    return readLiteral(TRUE) || readLiteral(FALSE) || readLiteral(NULL);
+  }
+
+  /**
+   * Skips the elements of an object or array whose opening bracket was consumed already, up to and including its
+   * closing bracket.
+   */
+  private boolean skipElements(char close, boolean object) {
+    skipWhitespace();
+    if (consume(close)) {
+      return true;
+    }
+    do {
+      skipWhitespace();
+      if (object) {
+        if (!consume('"') || !readString()) {
+          return false;
+        }
+        skipWhitespace();
+        if (!consume(':')) {
+          return false;
+        }
+        skipWhitespace();
+      }
+      if (!skipValue()) {
+        return false;
+      }
+      skipWhitespace();
+    } while (consume(','));
+    return consume(close);
+  }
+
+  /**
+   * Reads a JSON number, whose text is its string value.
+   *
+   * @return false if the number is not well-formed
+   */
+  private boolean readNumber() {
+    int start = position;
+    consume('-');
+    if (consume('0')) {
+      if (isDigit()) {
+        return false;
+      }
+    } else if (!skipDigits()) {
+      return false;
+    }
+    if (consume('.') && !skipDigits()) {
+      return false;
+    }
+    if (consume('e') || consume('E')) {
+      if (!consume('+')) {
+        consume('-');
+      }
+      if (!skipDigits()) {
+        return false;
+      }
+    }
+    token = data;
+    tokenStart = start;
+    tokenEnd = position;
+    return true;
+  }
+
+  private boolean readLiteral(byte[] literal) {
+    if (end - position < literal.length) {
+      return false;
+    }
+    for (int i = 0; i < literal.length; i++) {
+      if (data[position + i] != literal[i]) {
+        return false;
+      }
+    }
+    token = data;
+    tokenStart = position;
+    position += literal.length;
+    tokenEnd = position;
+    return true;
+  }
+
+  /**
+   * Checks whether the current token is an integer in the given range, as accepted by {@link Long#parseLong(String)}.
+   */
+  private boolean isInteger(long min, long max) {
+    int i = tokenStart;
+    if (i == tokenEnd) {
+      return false;
+    }
+    boolean negative = token[i] == '-';
+    if (negative || token[i] == '+') {
+      i++;
+      if (i == tokenEnd) {
+        return false;
+      }
+    }
+    // accumulates negatively, since the magnitude of the minimum is larger than the maximum
+    long limit = negative ? min : -max;
+    long value = 0;
+    for (; i < tokenEnd; i++) {
+      int b = token[i];
+      if (b < 0) {
+        // other unicode digits are rare enough to leave them to the JDK
+        return parsesInteger(min, max);
+      }
+      int digit = b - '0';
+      if (digit < 0 || digit > 9 || value < limit / 10) {
+        return false;
+      }
+      value *= 10;
+      if (value < limit + digit) {
+        return false;
+      }
+      value -= digit;
+    }
+    return true;
+  }
+
+  /**
+   * Checks whether the current token is a decimal number, as accepted by {@link Double#parseDouble(String)}.
+   */
+  private boolean isDecimal() {
+    int i = tokenStart;
+    int stop = tokenEnd;
+    // parseDouble ignores leading and trailing whitespace
+    while (i < stop && token[i] >= 0 && token[i] <= ' ') {
+      i++;
+    }
+    while (stop > i && token[stop - 1] >= 0 && token[stop - 1] <= ' ') {
+      stop--;
+    }
+    if (i < stop && (token[i] == '-' || token[i] == '+')) {
+      i++;
+    }
+    int digits = 0;
+    while (i < stop && token[i] >= '0' && token[i] <= '9') {
+      i++;
+      digits++;
+    }
+    if (i < stop && token[i] == '.') {
+      i++;
+      while (i < stop && token[i] >= '0' && token[i] <= '9') {
+        i++;
+        digits++;
+      }
+    }
+    if (digits > 0 && i < stop && (token[i] == 'e' || token[i] == 'E')) {
+      i++;
+      if (i < stop && (token[i] == '-' || token[i] == '+')) {
+        i++;
+      }
+      int exponentDigits = 0;
+      while (i < stop && token[i] >= '0' && token[i] <= '9') {
+        i++;
+        exponentDigits++;
+      }
+      digits = exponentDigits == 0 ? 0 : digits;
+    }
+    if (digits > 0 && i < stop && (token[i] == 'f' || token[i] == 'F' || token[i] == 'd' || token[i] == 'D')) {
+      i++;
+    }
+    // other forms, such as NaN, Infinity or hexadecimal, are rare enough to leave them to the JDK
+    return (digits > 0 && i == stop) || parsesDecimal();
+  }
+
+  private boolean parsesInteger(long min, long max) {
+    try {
+      long value = Long.parseLong(new String(token, tokenStart, tokenEnd - tokenStart, StandardCharsets.UTF_8));
+      return value >= min && value <= max;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  private boolean parsesDecimal() {
+    try {
+      Double.parseDouble(new String(token, tokenStart, tokenEnd - tokenStart, StandardCharsets.UTF_8));
+      return true;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  private void skipWhitespace() {
+    while (position < end && (data[position] == ' ' || data[position] == '\t'
+      || data[position] == '\n' || data[position] == '\r')) {
+      position++;
+    }
+  }
+
+  private boolean consume(char c) {
+    if (position < end && data[position] == c) {
+      position++;
+      return true;
+    }
+    return false;
+  }
+
+  private boolean isDigit() {
+    return position < end && data[position] >= '0' && data[position] <= '9';
+  }
+
+  /**
+   * Skips one or more digits.
+   *
+   * @return false if there is no digit at the current position
+   */
+  private boolean skipDigits() {
+    if (!isDigit()) {
+      return false;
+    }
+    while (isDigit()) {
+      position++;
+    }
+    return true;
   }
 }
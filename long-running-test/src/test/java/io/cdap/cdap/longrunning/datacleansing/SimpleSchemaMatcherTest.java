@@ -0,0 +1,251 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.longrunning.datacleansing;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Unit tests for {@link SimpleSchemaMatcher}, which check that it matches records the same way as the
+ * {@link StructuredRecord.Builder} it replaced.
+ */
+public class SimpleSchemaMatcherTest {
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("i", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+    Schema.Field.of("l", Schema.nullableOf(Schema.of(Schema.Type.LONG))),
+    Schema.Field.of("f", Schema.nullableOf(Schema.of(Schema.Type.FLOAT))),
+    Schema.Field.of("d", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))),
+    Schema.Field.of("b", Schema.nullableOf(Schema.of(Schema.Type.BOOLEAN))),
+    Schema.Field.of("s", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("by", Schema.nullableOf(Schema.of(Schema.Type.BYTES))),
+    Schema.Field.of("a", Schema.nullableOf(Schema.arrayOf(Schema.of(Schema.Type.STRING)))));
+
+  private static final String[] MATCHING = {
+    "{\"id\":1}",
+    " {\n\t\"id\" : 1 \r} ",
+    "{\"id\":\"1\"}",
+    "{\"id\":\"+1\"}",
+    "{\"id\":2147483647}",
+    "{\"id\":-2147483648}",
+    "{\"id\":\"-2147483648\"}",
+    "{\"id\":1,\"l\":9223372036854775807}",
+    "{\"id\":1,\"l\":\"-9223372036854775808\"}",
+    "{\"id\":1,\"f\":\"1e39\"}",
+    "{\"id\":1,\"d\":1.5e-3}",
+    "{\"id\":1,\"d\":1E5}",
+    "{\"id\":1,\"d\":\"1.\"}",
+    "{\"id\":1,\"d\":\".5\"}",
+    "{\"id\":1,\"d\":\"-1e5\"}",
+    "{\"id\":1,\"d\":\"1.5f\"}",
+    "{\"id\":1,\"d\":\" 1.5 \"}",
+    "{\"id\":1,\"d\":\"NaN\"}",
+    "{\"id\":1,\"d\":\"-Infinity\"}",
+    "{\"id\":1,\"d\":\"0x1p3\"}",
+    "{\"id\":1,\"b\":false}",
+    "{\"id\":1,\"b\":\"yes\"}",
+    "{\"id\":1,\"s\":12}",
+    "{\"id\":1,\"s\":true}",
+    "{\"id\":1,\"s\":\"\"}",
+    "{\"id\":1,\"s\":\"a\\\"b\\\\c\\/\\n\\u00e9\\ud83d\\ude00\"}",
+    "{\"id\":1,\"by\":\"\\\\x00\"}",
+    // escaped keys and values
+    "{\"\\u0069d\":1}",
+    "{\"id\":\"\\u0031\"}",
+    // only the last value of a duplicate key counts
+    "{\"id\":\"x\",\"id\":1}",
+    "{\"id\":1,\"i\":null,\"i\":2}",
+    "{\"id\":1,\"i\":[1,{\"x\":[]}],\"i\":2}",
+  };
+
+  private static final String[] NOT_MATCHING = {
+    // int and long overflow
+    "{\"id\":2147483648}",
+    "{\"id\":-2147483649}",
+    "{\"id\":\"2147483648\"}",
+    "{\"id\":\"-2147483649\"}",
+    "{\"id\":1,\"l\":9223372036854775808}",
+    "{\"id\":1,\"l\":\"-9223372036854775809\"}",
+    // values which are not numbers of the type of their field
+    "{\"id\":1.0}",
+    "{\"id\":1e2}",
+    "{\"id\":\"\"}",
+    "{\"id\":\" 1\"}",
+    "{\"id\":\"1.\"}",
+    "{\"id\":1,\"d\":\"1e\"}",
+    "{\"id\":1,\"d\":\".\"}",
+    "{\"id\":1,\"d\":\"\"}",
+    "{\"id\":1,\"d\":\"1.5x\"}",
+    "{\"id\":1,\"d\":true}",
+    // null, object and array values, even for nullable fields
+    "{\"id\":null}",
+    "{\"id\":1,\"s\":null}",
+    "{\"id\":1,\"s\":{\"x\":\"y\"}}",
+    "{\"id\":1,\"s\":[]}",
+    "{\"id\":1,\"s\":[\"x\",\"y\"]}",
+    // the last value of a duplicate key is invalid
+    "{\"id\":1,\"id\":\"x\"}",
+    // missing, unknown and unsupported fields
+    "{}",
+    "{\"i\":1}",
+    "{\"id\":1,\"x\":1}",
+    "{\"id\":1,\"a\":\"x\"}",
+    // not an object, truncated, or followed by garbage
+    "",
+    "   ",
+    "[{\"id\":1}]",
+    "{\"id\":1",
+    "{\"id\":\"1",
+    "{\"id\":1,}",
+    "{\"id\":1} x",
+    "{\"id\":1}}",
+    "{\"id\":1}{}",
+  };
+
+  @Test
+  public void testMatchingRecords() {
+    SimpleSchemaMatcher matcher = new SimpleSchemaMatcher(SCHEMA);
+    for (String record : MATCHING) {
+      Assert.assertTrue(record, matchesWithStructuredRecord(SCHEMA, record));
+      Assert.assertTrue(record, matcher.matches(record));
+    }
+  }
+
+  @Test
+  public void testNonMatchingRecords() {
+    SimpleSchemaMatcher matcher = new SimpleSchemaMatcher(SCHEMA);
+    for (String record : NOT_MATCHING) {
+      Assert.assertFalse(record, matchesWithStructuredRecord(SCHEMA, record));
+      Assert.assertFalse(record, matcher.matches(record));
+    }
+  }
+
+  @Test
+  public void testReasons() {
+    SimpleSchemaMatcher matcher = new SimpleSchemaMatcher(SCHEMA);
+    Assert.assertEquals(SimpleSchemaMatcher.Result.MATCH, match(matcher, "{\"id\":1}"));
+    Assert.assertEquals(SimpleSchemaMatcher.Result.MALFORMED, match(matcher, "{\"id\":1"));
+    Assert.assertEquals(SimpleSchemaMatcher.Result.UNKNOWN_FIELD, match(matcher, "{\"id\":1,\"x\":1}"));
+    Assert.assertEquals(SimpleSchemaMatcher.Result.MISSING_FIELD, match(matcher, "{\"i\":1}"));
+    Assert.assertEquals(SimpleSchemaMatcher.Result.INVALID_VALUE, match(matcher, "{\"id\":\"x\"}"));
+    Assert.assertEquals(SimpleSchemaMatcher.Result.UNSUPPORTED_TYPE, match(matcher, "{\"id\":1,\"a\":\"x\"}"));
+    // a malformed nested value makes the whole record malformed
+    Assert.assertEquals(SimpleSchemaMatcher.Result.MALFORMED, match(matcher, "{\"id\":1,\"s\":[1,}"));
+  }
+
+  @Test
+  public void testMatchInRange() {
+    SimpleSchemaMatcher matcher = new SimpleSchemaMatcher(SCHEMA);
+    byte[] data = "x{\"id\":1}x".getBytes(StandardCharsets.UTF_8);
+    Assert.assertEquals(SimpleSchemaMatcher.Result.MATCH, matcher.match(data, 1, data.length - 2));
+    Assert.assertEquals(SimpleSchemaMatcher.Result.MALFORMED, matcher.match(data, 0, data.length - 1));
+  }
+
+  @Test
+  public void testGetValue() {
+    SimpleSchemaMatcher matcher = new SimpleSchemaMatcher(SCHEMA);
+    int id = matcher.getFieldIndex("id");
+    int s = matcher.getFieldIndex("s");
+    Assert.assertEquals(-1, matcher.getFieldIndex("x"));
+
+    // values are read as Gson reads them, with escapes decoded and the last value of duplicate keys
+    Assert.assertTrue(matcher.matches("{\"\\u0069d\":\"7\",\"s\":\"a\\\"b\\u00e9\",\"id\": 12 }"));
+    Assert.assertEquals("12", matcher.getValue(id));
+    Assert.assertEquals("a\"b\u00e9", matcher.getValue(s));
+    for (String record : MATCHING) {
+      Assert.assertTrue(record, matcher.matches(record));
+      String expected = new JsonParser().parse(record).getAsJsonObject().get("id").getAsString();
+      Assert.assertEquals(record, expected, matcher.getValue(id));
+    }
+
+    Assert.assertTrue(matcher.matches("{\"id\":\"-5\",\"s\":true}"));
+    Assert.assertEquals("-5", matcher.getValue(id));
+    Assert.assertEquals("true", matcher.getValue(s));
+
+    // a nullable field may be missing
+    Assert.assertTrue(matcher.matches("{\"id\":1}"));
+    Assert.assertNull(matcher.getValue(s));
+
+    Assert.assertFalse(matcher.matches("{\"id\":\"x\"}"));
+    try {
+      matcher.getValue(id);
+      Assert.fail("Expected values of a record that did not match to be unavailable");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testSingleElementArrays() {
+    // Gson reads the string value of an array with a single element, but the matcher rejects all arrays
+    SimpleSchemaMatcher matcher = new SimpleSchemaMatcher(SCHEMA);
+    for (String record : new String[] { "{\"id\":[\"5\"]}", "{\"id\":[[5]]}", "{\"id\":1,\"s\":[\"x\"]}" }) {
+      Assert.assertTrue(record, matchesWithStructuredRecord(SCHEMA, record));
+      Assert.assertFalse(record, matcher.matches(record));
+    }
+  }
+
+  @Test
+  public void testLenientJson() {
+    // Gson parses leniently, but the matcher only recognizes strict JSON
+    SimpleSchemaMatcher matcher = new SimpleSchemaMatcher(SCHEMA);
+    String[] records = {
+      "{\"id\":1,\"d\":1.}",
+      "{\"id\":1,\"d\":.5}",
+      "{\"id\":1,\"d\":NaN}",
+      "{\"id\":1,\"s\":abc}",
+      "{id:1}",
+      "{'id':'1'}",
+    };
+    for (String record : records) {
+      Assert.assertTrue(record, matchesWithStructuredRecord(SCHEMA, record));
+      Assert.assertEquals(record, SimpleSchemaMatcher.Result.MALFORMED, match(matcher, record));
+    }
+  }
+
+  private static SimpleSchemaMatcher.Result match(SimpleSchemaMatcher matcher, String record) {
+    byte[] data = record.getBytes(StandardCharsets.UTF_8);
+    return matcher.match(data, 0, data.length);
+  }
+
+  /**
+   * Matches a record the way {@link DataCleansingMapReduce} did before it used {@link SimpleSchemaMatcher}.
+   */
+  private static boolean matchesWithStructuredRecord(Schema schema, String data) {
+    try {
+      JsonObject jsonObject = new JsonParser().parse(data).getAsJsonObject();
+      StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+      for (Map.Entry<String, JsonElement> entry : jsonObject.entrySet()) {
+        builder.convertAndSet(entry.getKey(), entry.getValue().getAsString());
+      }
+      builder.build();
+      return true;
+    } catch (Exception e) {
+      return false;
+    }
+  }
+}
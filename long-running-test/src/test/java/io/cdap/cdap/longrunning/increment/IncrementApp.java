@@ -0,0 +1,42 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.longrunning.increment;
+
+import io.cdap.cdap.api.app.AbstractApplication;
+import io.cdap.cdap.api.dataset.DatasetProperties;
+import io.cdap.cdap.api.dataset.table.ConflictDetection;
+import io.cdap.cdap.api.dataset.table.Table;
+
+/**
+ * An app with a counter in a readless-increment table, which {@link IncrementService} increments and reads.
+ */
+public class IncrementApp extends AbstractApplication {
+  public static final String NAME = "IncrementApp";
+  public static final String COUNTERS_TABLE = "counters";
+
+  @Override
+  public void configure() {
+    setName(NAME);
+    setDescription("An app that increments a counter concurrently.");
+    addService(new IncrementService());
+    // increments of the counter never conflict, so that concurrent increments only contend on the write path
+    createDataset(COUNTERS_TABLE, Table.class, DatasetProperties.builder()
+      .add(Table.PROPERTY_READLESS_INCREMENT, "true")
+      .add(Table.PROPERTY_CONFLICT_LEVEL, ConflictDetection.NONE.name())
+      .build());
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.longrunning.increment;
+
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.table.Row;
+import io.cdap.cdap.api.dataset.table.Table;
+import io.cdap.cdap.api.service.AbstractService;
+import io.cdap.cdap.api.service.Service;
+import io.cdap.cdap.api.service.http.AbstractHttpServiceHandler;
+import io.cdap.cdap.api.service.http.HttpServiceRequest;
+import io.cdap.cdap.api.service.http.HttpServiceResponder;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+
+/**
+ * A {@link Service} to increment the counter of the {@link IncrementApp} and read its value.
+ */
+public class IncrementService extends AbstractService {
+
+  public static final String NAME = "IncrementService";
+  public static final String SUM = "sum";
+  public static final String COUNT = "count";
+
+  private static final byte[] ROW = Bytes.toBytes("counter");
+  private static final byte[][] COLUMNS = { Bytes.toBytes(SUM), Bytes.toBytes(COUNT) };
+
+  @Override
+  protected void configure() {
+    setName(NAME);
+    setDescription("A service to increment a counter and read its value.");
+    addHandler(new CounterHandler());
+  }
+
+  /**
+   * A handler that increments the counter by a given amount, and returns the sum and number of increments.
+   */
+  @Path("/v1")
+  public static class CounterHandler extends AbstractHttpServiceHandler {
+
+    @POST
+    @Path("/increment/{amount}")
+    public void increment(HttpServiceRequest request, HttpServiceResponder responder,
+                          @PathParam("amount") long amount) {
+      Table counters = getContext().getDataset(IncrementApp.COUNTERS_TABLE);
+      // with readless increments, this is a write only, no matter how many callers increment concurrently
+      counters.increment(ROW, COLUMNS, new long[] { amount, 1L });
+      responder.sendStatus(200);
+    }
+
+    @GET
+    @Path("/counter")
+    public void get(HttpServiceRequest request, HttpServiceResponder responder) {
+      Table counters = getContext().getDataset(IncrementApp.COUNTERS_TABLE);
+      Row row = counters.get(ROW);
+      responder.sendJson(200, ImmutableMap.of(SUM, row.getLong(COLUMNS[0], 0L),
+                                              COUNT, row.getLong(COLUMNS[1], 0L)));
+    }
+  }
+}
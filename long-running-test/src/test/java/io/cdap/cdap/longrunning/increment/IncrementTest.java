@@ -0,0 +1,186 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.longrunning.increment;
+
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import io.cdap.cdap.client.util.RESTClient;
+import io.cdap.cdap.proto.ProgramRunStatus;
+import io.cdap.cdap.test.ApplicationManager;
+import io.cdap.cdap.test.LongRunningTestBase;
+import io.cdap.cdap.test.ServiceManager;
+import io.cdap.cdap.test.load.LatencyHistogram;
+import io.cdap.cdap.test.load.LoadGenerator;
+import io.cdap.cdap.test.load.LoadResult;
+import io.cdap.cdap.test.load.LoadSpec;
+import io.cdap.common.http.HttpRequest;
+import io.cdap.common.http.HttpResponse;
+import org.junit.Assert;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Increments a counter in a readless-increment table from many concurrent clients at a configurable rate, and
+ * verifies in the next iteration that the counter has exactly the sum of all increments. If some increments fail,
+ * the iteration fails, and the next one verifies the counter against the value it had after the failed increments.
+ *
+ * The load is configured with the following system properties:
+ * <ul>
+ *   <li>{@code increment.test.rate}: increments per second, 100 by default</li>
+ *   <li>{@code increment.test.concurrency}: maximum number of concurrent increments, 20 by default</li>
+ *   <li>{@code increment.test.duration.seconds}: how long to increment for in each iteration, 60 by default</li>
+ *   <li>{@code increment.test.rampup.seconds}: time to ramp up to the full rate, 10 by default</li>
+ * </ul>
+ */
+public class IncrementTest extends LongRunningTestBase<IncrementTestState> {
+
+  private static final Gson GSON = new Gson();
+  private static final Type COUNTER_TYPE = new TypeToken<Map<String, Long>>() { }.getType();
+  // number of reads to measure the read latency of the counter with
+  private static final int READ_SAMPLES = 20;
+
+  private static final double RATE = Double.parseDouble(System.getProperty("increment.test.rate", "100"));
+  private static final int CONCURRENCY = Integer.getInteger("increment.test.concurrency", 20);
+  private static final long DURATION_SECONDS = Long.getLong("increment.test.duration.seconds", 60L);
+  private static final long RAMP_UP_SECONDS = Long.getLong("increment.test.rampup.seconds", 10L);
+
+  @Override
+  public void deploy() throws Exception {
+    deployApplication(getLongRunningNamespace(), IncrementApp.class);
+  }
+
+  @Override
+  public void start() throws Exception {
+    getServiceManager().start().waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS,
+                                           TimeUnit.SECONDS);
+  }
+
+  @Override
+  public void stop() throws Exception {
+    ServiceManager serviceManager = getServiceManager();
+    serviceManager.stop();
+    serviceManager.waitForRun(ProgramRunStatus.KILLED, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+  }
+
+  private ServiceManager getServiceManager() throws Exception {
+    ApplicationManager applicationManager =
+      getApplicationManager(getLongRunningNamespace().app(IncrementApp.NAME));
+    return applicationManager.getServiceManager(IncrementService.NAME);
+  }
+
+  @Override
+  public IncrementTestState getInitialState() {
+    return new IncrementTestState(0, 0, null, 0, 0);
+  }
+
+  @Override
+  public void awaitOperations(IncrementTestState state) throws Exception {
+    // increments are complete once their call returns
+  }
+
+  @Override
+  public IncrementTestState verifyRuns(IncrementTestState state) throws Exception {
+    URL serviceURL = getServiceManager().getServiceURL(PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    URL counterURL = new URL(serviceURL, "v1/counter");
+    RESTClient restClient = createLoadClient();
+    LatencyHistogram readLatency = new LatencyHistogram();
+    for (int i = 0; i < READ_SAMPLES; i++) {
+      long start = System.nanoTime();
+      Map<String, Long> counter = readCounter(restClient, counterURL);
+      readLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      Assert.assertEquals(state.getSumEvents(), (long) counter.get(IncrementService.SUM));
+      Assert.assertEquals(state.getNumEvents(), (long) counter.get(IncrementService.COUNT));
+    }
+    LOG.info("Read latency of the counter: p50 {} us, max {} us", readLatency.getValueAtPercentile(50),
+             readLatency.getMaxMicros());
+    recordSample("read.p50.micros", readLatency.getValueAtPercentile(50), Direction.LOWER_IS_BETTER);
+    return new IncrementTestState(state.getSumEvents(), state.getNumEvents(), state.getIncrementLoad(),
+                                  readLatency.getValueAtPercentile(50), readLatency.getMaxMicros());
+  }
+
+  @Override
+  public IncrementTestState runOperations(IncrementTestState state) throws Exception {
+    URL serviceURL = getServiceManager().getServiceURL(PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    final URL incrementURL = new URL(serviceURL, "v1/increment/");
+    final LongAdder sum = new LongAdder();
+    final LongAdder count = new LongAdder();
+    final RESTClient restClient = createLoadClient();
+
+    LoadSpec spec = LoadSpec.builder()
+      .setRatePerSecond(RATE)
+      .setConcurrency(CONCURRENCY)
+      .setArrival(LoadSpec.Arrival.POISSON)
+      .setRampUp(RAMP_UP_SECONDS, TimeUnit.SECONDS)
+      .setDuration(DURATION_SECONDS, TimeUnit.SECONDS)
+      .build();
+    LoadResult result = new LoadGenerator(spec).run(new LoadGenerator.Operation() {
+      @Override
+      public void run(long sequence) throws Exception {
+        // varying amounts, so that a lost or repeated increment changes the sum differently than the count
+        long amount = sequence % 10 + 1;
+        HttpResponse response = restClient.execute(HttpRequest.post(new URL(incrementURL, Long.toString(amount)))
+                                                     .build(), getClientConfig().getAccessToken());
+        if (response.getResponseCode() != HttpURLConnection.HTTP_OK) {
+          throw new IOException(String.format("Failed to increment by %d: %d %s", amount, response.getResponseCode(),
+                                              response.getResponseMessage()));
+        }
+        sum.add(amount);
+        count.increment();
+      }
+    });
+
+    if (result.getFailures() > 0 || result.getIncomplete() > 0) {
+      // an increment that failed, e.g. with a read timeout, or did not complete may still have been applied. So the
+      // counter is read once the load drained, and the next iteration verifies that it doesn't change after that.
+      recordFailure(new AssertionError("Increments failed or did not complete: " + result));
+      Map<String, Long> counter = readCounter(restClient, new URL(serviceURL, "v1/counter"));
+      LOG.warn("Expected sum {} and count {}, but the counter has sum {} and count {} after the failed increments",
+               state.getSumEvents() + sum.sum(), state.getNumEvents() + count.sum(),
+               counter.get(IncrementService.SUM), counter.get(IncrementService.COUNT));
+      return new IncrementTestState(counter.get(IncrementService.SUM), counter.get(IncrementService.COUNT), result,
+                                    state.getReadLatencyP50Micros(), state.getReadLatencyMaxMicros());
+    }
+    recordSample("increment.throughput", result.getAchievedRate(), Direction.HIGHER_IS_BETTER);
+    recordSample("increment.p99.micros", result.getP99Micros(), Direction.LOWER_IS_BETTER);
+    return new IncrementTestState(state.getSumEvents() + sum.sum(), state.getNumEvents() + count.sum(), result,
+                                  state.getReadLatencyP50Micros(), state.getReadLatencyMaxMicros());
+  }
+
+  /**
+   * Creates a client for the calls whose latency is measured. Unlike the one of {@link #getRestClient()}, it doesn't
+   * log and count every call, which would slow down the calls and flood the log.
+   */
+  private RESTClient createLoadClient() {
+    return new RESTClient(getClientConfig());
+  }
+
+  private Map<String, Long> readCounter(RESTClient restClient, URL counterURL) throws Exception {
+    HttpResponse response = restClient.execute(HttpRequest.get(counterURL).build(),
+                                               getClientConfig().getAccessToken());
+    if (response.getResponseCode() != HttpURLConnection.HTTP_OK) {
+      throw new IOException(String.format("Failed to read the counter: %d %s", response.getResponseCode(),
+                                          response.getResponseMessage()));
+    }
+    return GSON.fromJson(response.getResponseBodyAsString(), COUNTER_TYPE);
+  }
+}
@@ -18,17 +18,28 @@ package io.cdap.cdap.longrunning.increment;
 
 import com.google.common.base.Objects;
 import io.cdap.cdap.test.TestState;
+import io.cdap.cdap.test.load.LoadResult;
+
+import javax.annotation.Nullable;
 
 /**
- *
+ * State of the {@link IncrementTest}: the expected value of the counter, and the performance of the last iteration.
  */
 public class IncrementTestState implements TestState {
   private final long sumEvents;
   private final long numEvents;
+  @Nullable
+  private final LoadResult incrementLoad;
+  private final long readLatencyP50Micros;
+  private final long readLatencyMaxMicros;
 
-  public IncrementTestState(long sumEvents, long numEvents) {
+  public IncrementTestState(long sumEvents, long numEvents, @Nullable LoadResult incrementLoad,
+                            long readLatencyP50Micros, long readLatencyMaxMicros) {
     this.sumEvents = sumEvents;
     this.numEvents = numEvents;
+    this.incrementLoad = incrementLoad;
+    this.readLatencyP50Micros = readLatencyP50Micros;
+    this.readLatencyMaxMicros = readLatencyMaxMicros;
   }
 
   public long getSumEvents() {
@@ -39,12 +50,30 @@ public class IncrementTestState implements TestState {
     return numEvents;
   }
 
+  /**
+   * @return the throughput and latency of the increments of the last iteration, or {@code null} if there was none
+   */
+  @Nullable
+  public LoadResult getIncrementLoad() {
+    return incrementLoad;
+  }
+
+  public long getReadLatencyP50Micros() {
+    return readLatencyP50Micros;
+  }
+
+  public long getReadLatencyMaxMicros() {
+    return readLatencyMaxMicros;
+  }
 
   @Override
   public String toString() {
     return Objects.toStringHelper(this)
       .add("sumEvents", sumEvents)
       .add("numEvents", numEvents)
+      .add("incrementLoad", incrementLoad)
+      .add("readLatencyP50Micros", readLatencyP50Micros)
+      .add("readLatencyMaxMicros", readLatencyMaxMicros)
       .toString();
   }
 }
@@ -0,0 +1,37 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.longrunning.txprune;
+
+import io.cdap.cdap.api.app.AbstractApplication;
+import io.cdap.cdap.api.dataset.lib.KeyValueTable;
+
+/**
+ * An app to create invalid transactions with, and to measure the latency of transactions.
+ */
+public class InvalidListPruneApp extends AbstractApplication {
+  public static final String NAME = "InvalidListPruneApp";
+  public static final String TABLE = "invalidTxTable";
+
+  @Override
+  public void configure() {
+    setName(NAME);
+    setDescription("An app that creates invalid transactions.");
+    addWorker(new InvalidTxGeneratorWorker());
+    addService(new TxLatencyService());
+    createDataset(TABLE, KeyValueTable.class);
+  }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.longrunning.txprune;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import io.cdap.cdap.common.utils.Tasks;
+import io.cdap.cdap.proto.ProgramRunStatus;
+import io.cdap.cdap.test.ApplicationManager;
+import io.cdap.cdap.test.LongRunningTestBase;
+import io.cdap.cdap.test.ServiceManager;
+import io.cdap.cdap.test.WorkerManager;
+import io.cdap.cdap.test.load.LatencyHistogram;
+import io.cdap.cdap.test.runner.AutoSuiteRunner;
+import io.cdap.common.http.HttpRequest;
+import io.cdap.common.http.HttpResponse;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+
+import java.lang.reflect.Type;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates invalid transactions in every iteration, and tracks how long it takes until they are pruned from the
+ * invalid list. Also records the size of the invalid list and the latency of transactions in every iteration, since
+ * a large invalid list slows down every transaction.
+ *
+ * It needs a CDAP instance with invalid list pruning enabled ({@code data.tx.prune.enable} set to true), and is
+ * skipped unless the {@code txprune.test.enabled} system property is set to true to confirm that.
+ *
+ * The following system properties configure it:
+ * <ul>
+ *   <li>{@code txprune.test.invalid.tx.count}: invalid transactions to create per iteration, 10 by default</li>
+ *   <li>{@code txprune.test.max.pending.iterations}: number of iterations after which the invalid transactions of an
+ *   iteration must be pruned, 10 by default</li>
+ * </ul>
+ */
+// takes every transaction that is added to the global invalid list while its worker runs to be one of its own
+@AutoSuiteRunner.Serial
+public class InvalidListPruneTest extends LongRunningTestBase<InvalidListPruneTestState> {
+
+  private static final Gson GSON = new Gson();
+  private static final Type INVALID_LIST_TYPE = new TypeToken<List<Long>>() { }.getType();
+  private static final boolean ENABLED = Boolean.getBoolean("txprune.test.enabled");
+  private static final int INVALID_TX_COUNT = Integer.getInteger("txprune.test.invalid.tx.count", 10);
+  private static final int MAX_PENDING_ITERATIONS = Integer.getInteger("txprune.test.max.pending.iterations", 10);
+  // number of calls to measure the latency of transactions with
+  private static final int LATENCY_SAMPLES = 50;
+  // number of iterations to keep the measurements of, so that the state does not grow without bound
+  private static final int HISTORY_SIZE = 50;
+
+  @BeforeClass
+  public static void assumePruningEnabled() {
+    // without pruning, the invalid transactions are never pruned, and the test fails after a few iterations
+    Assume.assumeTrue("Invalid list pruning is not enabled, set txprune.test.enabled=true if it is", ENABLED);
+  }
+
+  @Override
+  public void deploy() throws Exception {
+    deployApplication(getLongRunningNamespace(), InvalidListPruneApp.class);
+  }
+
+  @Override
+  public void start() throws Exception {
+    getServiceManager().start().waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS,
+                                           TimeUnit.SECONDS);
+  }
+
+  @Override
+  public void stop() throws Exception {
+    WorkerManager workerManager = getApplicationManager().getWorkerManager(InvalidTxGeneratorWorker.NAME);
+    if (workerManager.isRunning()) {
+      workerManager.stop();
+    }
+    ServiceManager serviceManager = getServiceManager();
+    serviceManager.stop();
+    serviceManager.waitForRun(ProgramRunStatus.KILLED, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+  }
+
+  private ApplicationManager getApplicationManager() throws Exception {
+    return getApplicationManager(getLongRunningNamespace().app(InvalidListPruneApp.NAME));
+  }
+
+  private ServiceManager getServiceManager() throws Exception {
+    return getApplicationManager().getServiceManager(TxLatencyService.NAME);
+  }
+
+  @Override
+  public InvalidListPruneTestState getInitialState() {
+    return new InvalidListPruneTestState(0, new HashMap<Integer, List<Long>>(), new HashMap<Integer, Long>(),
+                                         new TreeMap<Integer, Long>(), new TreeMap<Integer, Integer>(),
+                                         new TreeMap<Integer, Long>());
+  }
+
+  @Override
+  public void awaitOperations(InvalidListPruneTestState state) throws Exception {
+    // the invalid transactions are created synchronously by runOperations
+  }
+
+  @Override
+  public InvalidListPruneTestState verifyRuns(InvalidListPruneTestState state) throws Exception {
+    long now = System.currentTimeMillis();
+    Set<Long> invalidList = new HashSet<>(getInvalidList());
+    LOG.info("Invalid list has {} transactions", invalidList.size());
+
+    Map<Integer, List<Long>> pending = new HashMap<>(state.getInvalidTxIds());
+    Map<Integer, Long> pendingTimes = new HashMap<>(state.getInvalidTxTimes());
+    SortedMap<Integer, Long> pruneLatencies = new TreeMap<>(state.getPruneLatencyMillis());
+    for (Iterator<Map.Entry<Integer, List<Long>>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry<Integer, List<Long>> entry = it.next();
+      int iteration = entry.getKey();
+      if (Collections.disjoint(invalidList, entry.getValue())) {
+        // pruned some time since the previous iteration, so this is an upper bound
+        long latency = now - pendingTimes.remove(iteration);
+        LOG.info("Invalid transactions of iteration {} were pruned within {} ms", iteration, latency);
+        pruneLatencies.put(iteration, latency);
+        it.remove();
+      } else {
+        Assert.assertTrue(String.format("Invalid transactions of iteration %d were not pruned within %d iterations",
+                                        iteration, MAX_PENDING_ITERATIONS),
+                          state.getIteration() - iteration < MAX_PENDING_ITERATIONS);
+      }
+    }
+
+    SortedMap<Integer, Integer> invalidListSizes = new TreeMap<>(state.getInvalidListSizes());
+    invalidListSizes.put(state.getIteration(), invalidList.size());
+    SortedMap<Integer, Long> txLatencies = new TreeMap<>(state.getTxLatencyMicros());
+    long txLatency = measureTxLatency();
+    txLatencies.put(state.getIteration(), txLatency);
+    recordSample("tx.latency.micros", txLatency, Direction.LOWER_IS_BETTER);
+    return new InvalidListPruneTestState(state.getIteration(), pending, pendingTimes, trim(pruneLatencies),
+                                         trim(invalidListSizes), trim(txLatencies));
+  }
+
+  @Override
+  public InvalidListPruneTestState runOperations(InvalidListPruneTestState state) throws Exception {
+    int iteration = state.getIteration() + 1;
+    Set<Long> before = new HashSet<>(getInvalidList());
+
+    final WorkerManager workerManager = getApplicationManager().getWorkerManager(InvalidTxGeneratorWorker.NAME);
+    workerManager.start(ImmutableMap.of(InvalidTxGeneratorWorker.INVALID_TX_COUNT, Integer.toString(INVALID_TX_COUNT)));
+    workerManager.waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    Tasks.waitFor(false, workerManager::isRunning, 5, TimeUnit.MINUTES, 1, TimeUnit.SECONDS);
+
+    List<Long> invalidTxIds = new ArrayList<>();
+    for (long txId : getInvalidList()) {
+      if (!before.contains(txId)) {
+        invalidTxIds.add(txId);
+      }
+    }
+    Collections.sort(invalidTxIds);
+    LOG.info("Created invalid transactions {} in iteration {}", invalidTxIds, iteration);
+    Assert.assertTrue(String.format("Expected at least %d new invalid transactions, but found %s",
+                                    INVALID_TX_COUNT, invalidTxIds),
+                      invalidTxIds.size() >= INVALID_TX_COUNT);
+
+    Map<Integer, List<Long>> pending = new HashMap<>(state.getInvalidTxIds());
+    pending.put(iteration, invalidTxIds);
+    Map<Integer, Long> pendingTimes = new HashMap<>(state.getInvalidTxTimes());
+    pendingTimes.put(iteration, System.currentTimeMillis());
+    return new InvalidListPruneTestState(iteration, pending, pendingTimes, state.getPruneLatencyMillis(),
+                                         state.getInvalidListSizes(), state.getTxLatencyMicros());
+  }
+
+  private List<Long> getInvalidList() throws Exception {
+    URL url = getClientConfig().resolveURLV3("transactions/invalid");
+    HttpResponse response = getRestClient().execute(HttpRequest.get(url).build(), getClientConfig().getAccessToken());
+    Assert.assertEquals(200, response.getResponseCode());
+    return GSON.fromJson(response.getResponseBodyAsString(), INVALID_LIST_TYPE);
+  }
+
+  /**
+   * Returns how long it takes to start and commit a transaction, as the difference of the median latencies of
+   * calls to the service with and without a transaction.
+   */
+  private long measureTxLatency() throws Exception {
+    URL serviceURL = getServiceManager().getServiceURL(PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    long withTx = measureLatency(new URL(serviceURL, "v1/tx"));
+    long withoutTx = measureLatency(new URL(serviceURL, "v1/notx"));
+    LOG.info("Median latency with transaction {} us, without {} us", withTx, withoutTx);
+    return Math.max(0L, withTx - withoutTx);
+  }
+
+  private long measureLatency(URL url) throws Exception {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < LATENCY_SAMPLES; i++) {
+      long start = System.nanoTime();
+      HttpResponse response = getRestClient().execute(HttpRequest.get(url).build(),
+                                                      getClientConfig().getAccessToken());
+      histogram.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      Assert.assertEquals(200, response.getResponseCode());
+    }
+    return histogram.getValueAtPercentile(50);
+  }
+
+  private static <V> SortedMap<Integer, V> trim(SortedMap<Integer, V> history) {
+    while (history.size() > HISTORY_SIZE) {
+      history.remove(history.firstKey());
+    }
+    return history;
+  }
+}
@@ -20,20 +20,36 @@ import io.cdap.cdap.test.TestState;
 
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
 
 /**
- *
+ * State of the {@link InvalidListPruneTest}. Maps are keyed by iteration.
  */
 @SuppressWarnings("WeakerAccess")
 public class InvalidListPruneTestState implements TestState {
   private final int iteration;
-  // Map of iteration to invalid ids generated during that iteration
+  // Map of iteration to invalid ids generated during that iteration, which were not pruned yet
   private final Map<Integer, List<Long>> invalidTxIds;
+  // when the invalid ids of each iteration were generated, in milliseconds since the epoch
+  private final Map<Integer, Long> invalidTxTimes;
+  // how long it took until all invalid ids generated during an iteration were pruned
+  private final SortedMap<Integer, Long> pruneLatencyMillis;
+  // size of the invalid list at the start of an iteration
+  private final SortedMap<Integer, Integer> invalidListSizes;
+  // time to start and commit a transaction at the start of an iteration
+  private final SortedMap<Integer, Long> txLatencyMicros;
 
-  public InvalidListPruneTestState(int iteration, Map<Integer, List<Long>> invalidTxIds) {
+  public InvalidListPruneTestState(int iteration, Map<Integer, List<Long>> invalidTxIds,
+                                   Map<Integer, Long> invalidTxTimes, SortedMap<Integer, Long> pruneLatencyMillis,
+                                   SortedMap<Integer, Integer> invalidListSizes,
+                                   SortedMap<Integer, Long> txLatencyMicros) {
     this.iteration = iteration;
     // TODO: make this immutable
     this.invalidTxIds = invalidTxIds;
+    this.invalidTxTimes = invalidTxTimes;
+    this.pruneLatencyMillis = pruneLatencyMillis;
+    this.invalidListSizes = invalidListSizes;
+    this.txLatencyMicros = txLatencyMicros;
   }
 
   public int getIteration() {
@@ -44,11 +60,31 @@ public class InvalidListPruneTestState implements TestState {
     return invalidTxIds;
   }
 
+  public Map<Integer, Long> getInvalidTxTimes() {
+    return invalidTxTimes;
+  }
+
+  public SortedMap<Integer, Long> getPruneLatencyMillis() {
+    return pruneLatencyMillis;
+  }
+
+  public SortedMap<Integer, Integer> getInvalidListSizes() {
+    return invalidListSizes;
+  }
+
+  public SortedMap<Integer, Long> getTxLatencyMicros() {
+    return txLatencyMicros;
+  }
+
   @Override
   public String toString() {
     return "InvalidListPruneTestState{" +
       "iteration=" + iteration +
       ", invalidTxIds=" + invalidTxIds +
+      ", invalidTxTimes=" + invalidTxTimes +
+      ", pruneLatencyMillis=" + pruneLatencyMillis +
+      ", invalidListSizes=" + invalidListSizes +
+      ", txLatencyMicros=" + txLatencyMicros +
       '}';
   }
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.longrunning.txprune;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.cdap.cdap.api.TxRunnable;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.data.DatasetContext;
+import io.cdap.cdap.api.dataset.lib.KeyValueTable;
+import io.cdap.cdap.api.worker.AbstractWorker;
+import org.apache.tephra.TransactionFailureException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A worker that creates invalid transactions and then completes. Each transaction writes to a table and then runs
+ * past its timeout, so that the transaction manager invalidates it. The transactions run concurrently.
+ *
+ * The following runtime arguments configure it:
+ * <ul>
+ *   <li>{@code invalid.tx.count}: the number of invalid transactions to create, 10 by default</li>
+ *   <li>{@code tx.timeout.seconds}: the timeout of the transactions, 1 by default</li>
+ *   <li>{@code sleep.seconds}: how long each transaction runs, which must be long enough for the transaction
+ *   manager to notice the timeout, 15 by default</li>
+ * </ul>
+ */
+public class InvalidTxGeneratorWorker extends AbstractWorker {
+  public static final String NAME = "InvalidTxGenerator";
+  public static final String INVALID_TX_COUNT = "invalid.tx.count";
+  public static final String TX_TIMEOUT_SECONDS = "tx.timeout.seconds";
+  public static final String SLEEP_SECONDS = "sleep.seconds";
+
+  private static final Logger LOG = LoggerFactory.getLogger(InvalidTxGeneratorWorker.class);
+
+  @Override
+  protected void configure() {
+    setName(NAME);
+    setDescription("Creates invalid transactions.");
+  }
+
+  @Override
+  public void run() {
+    Map<String, String> args = getContext().getRuntimeArguments();
+    int count = getInt(args, INVALID_TX_COUNT, 10);
+    final int timeoutSeconds = getInt(args, TX_TIMEOUT_SECONDS, 1);
+    final int sleepSeconds = getInt(args, SLEEP_SECONDS, 15);
+
+    ExecutorService executor = Executors.newFixedThreadPool(
+      count, new ThreadFactoryBuilder().setNameFormat("invalid-tx-%d").setDaemon(true).build());
+    for (int i = 0; i < count; i++) {
+      final byte[] key = Bytes.toBytes(i);
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            getContext().execute(timeoutSeconds, new TxRunnable() {
+              @Override
+              public void run(DatasetContext context) throws Exception {
+                KeyValueTable table = context.getDataset(InvalidListPruneApp.TABLE);
+                table.write(key, Bytes.toBytes(System.currentTimeMillis()));
+                TimeUnit.SECONDS.sleep(sleepSeconds);
+              }
+            });
+            LOG.warn("Transaction committed although it ran past its timeout");
+          } catch (TransactionFailureException e) {
+            // expected, since the transaction timed out
+            LOG.debug("Transaction failed as expected", e);
+          }
+        }
+      });
+    }
+    executor.shutdown();
+    try {
+      executor.awaitTermination(timeoutSeconds + sleepSeconds + 60, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static int getInt(Map<String, String> args, String name, int defaultValue) {
+    String value = args.get(name);
+    return value == null ? defaultValue : Integer.parseInt(value);
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.longrunning.txprune;
+
+import io.cdap.cdap.api.annotation.TransactionControl;
+import io.cdap.cdap.api.annotation.TransactionPolicy;
+import io.cdap.cdap.api.service.AbstractService;
+import io.cdap.cdap.api.service.Service;
+import io.cdap.cdap.api.service.http.AbstractHttpServiceHandler;
+import io.cdap.cdap.api.service.http.HttpServiceRequest;
+import io.cdap.cdap.api.service.http.HttpServiceResponder;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+
+/**
+ * A {@link Service} with two endpoints that do nothing, one within a transaction and one without. The difference of
+ * their latencies is the time it takes to start and commit a transaction.
+ */
+public class TxLatencyService extends AbstractService {
+
+  public static final String NAME = "TxLatencyService";
+
+  @Override
+  protected void configure() {
+    setName(NAME);
+    setDescription("A service to measure the latency of transactions.");
+    addHandler(new TxLatencyHandler());
+  }
+
+  /**
+   * Handler with an endpoint that runs in a transaction, and one that does not.
+   */
+  @Path("/v1")
+  public static class TxLatencyHandler extends AbstractHttpServiceHandler {
+
+    @GET
+    @Path("/tx")
+    public void withTransaction(HttpServiceRequest request, HttpServiceResponder responder) {
+      responder.sendStatus(200);
+    }
+
+    @GET
+    @Path("/notx")
+    @TransactionPolicy(TransactionControl.EXPLICIT)
+    public void withoutTransaction(HttpServiceRequest request, HttpServiceResponder responder) {
+      responder.sendStatus(200);
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test;
+
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.test.LongRunningTestBase.Direction;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Unit tests for {@link PerformanceHistory}.
+ */
+public class PerformanceHistoryTest {
+
+  private static final double TOLERANCE = 0.5;
+  private static final int MIN_VALUES = 3;
+  private static final int WINDOW = 3;
+
+  @Test
+  public void testMedianOfOddNumberOfValues() {
+    PerformanceHistory history = createHistory(Direction.LOWER_IS_BETTER, 30, 10, 20);
+    // the median is 20, so up to 30 is within the tolerance
+    Assert.assertTrue(findRegressions(history, 30, Direction.LOWER_IS_BETTER).isEmpty());
+    Assert.assertEquals(1, findRegressions(history, 30.1, Direction.LOWER_IS_BETTER).size());
+  }
+
+  @Test
+  public void testMedianOfEvenNumberOfValues() {
+    PerformanceHistory history = new PerformanceHistory();
+    for (double value : new double[] { 40, 10, 30, 20 }) {
+      history.add(sample(value, Direction.LOWER_IS_BETTER), 4);
+    }
+    // the median is 25, so up to 37.5 is within the tolerance
+    Assert.assertTrue(findRegressions(history, 37.5, Direction.LOWER_IS_BETTER).isEmpty());
+    Assert.assertEquals(1, findRegressions(history, 37.6, Direction.LOWER_IS_BETTER).size());
+  }
+
+  @Test
+  public void testHigherIsBetter() {
+    PerformanceHistory history = createHistory(Direction.HIGHER_IS_BETTER, 150, 150, 150);
+    // a throughput of two thirds of the baseline is within the tolerance
+    Assert.assertTrue(findRegressions(history, 100, Direction.HIGHER_IS_BETTER).isEmpty());
+    Assert.assertEquals(1, findRegressions(history, 99.9, Direction.HIGHER_IS_BETTER).size());
+    // improvements never regress
+    Assert.assertTrue(findRegressions(history, 1000, Direction.HIGHER_IS_BETTER).isEmpty());
+  }
+
+  @Test
+  public void testLowerIsBetter() {
+    PerformanceHistory history = createHistory(Direction.LOWER_IS_BETTER, 100, 100, 100);
+    Assert.assertEquals(1, findRegressions(history, 151, Direction.LOWER_IS_BETTER).size());
+    Assert.assertTrue(findRegressions(history, 1, Direction.LOWER_IS_BETTER).isEmpty());
+  }
+
+  @Test
+  public void testTooFewValues() {
+    PerformanceHistory history = createHistory(Direction.LOWER_IS_BETTER, 100, 100);
+    Assert.assertTrue(findRegressions(history, 1000, Direction.LOWER_IS_BETTER).isEmpty());
+    Assert.assertTrue(history.findRegressions(sample(1000, Direction.LOWER_IS_BETTER, "other"), TOLERANCE,
+                                              MIN_VALUES).isEmpty());
+  }
+
+  @Test
+  public void testWindow() {
+    PerformanceHistory history = createHistory(Direction.LOWER_IS_BETTER, 10, 10, 10, 100, 100, 100);
+    // only the last three values are kept, so the baseline is 100
+    Assert.assertTrue(findRegressions(history, 140, Direction.LOWER_IS_BETTER).isEmpty());
+  }
+
+  @Test
+  public void testRegressionsAreNotAddedToBaseline() {
+    PerformanceHistory history = createHistory(Direction.LOWER_IS_BETTER, 10, 10, 10);
+    for (int i = 0; i < WINDOW + 1; i++) {
+      Assert.assertEquals(1, history.update(sample(100, Direction.LOWER_IS_BETTER), TOLERANCE, MIN_VALUES,
+                                            WINDOW).size());
+    }
+    // values that did not regress are added
+    Assert.assertTrue(history.update(sample(14, Direction.LOWER_IS_BETTER), TOLERANCE, MIN_VALUES,
+                                     WINDOW).isEmpty());
+    Assert.assertTrue(history.update(sample(14, Direction.LOWER_IS_BETTER), TOLERANCE, MIN_VALUES,
+                                     WINDOW).isEmpty());
+    // the baseline is 14 now
+    Assert.assertTrue(findRegressions(history, 21, Direction.LOWER_IS_BETTER).isEmpty());
+  }
+
+  @Test
+  public void testOnlyRegressedSamplesAreLeftOut() {
+    PerformanceHistory history = new PerformanceHistory();
+    for (int i = 0; i < WINDOW; i++) {
+      history.add(ImmutableMap.of("a", new PerformanceHistory.Sample(10, Direction.LOWER_IS_BETTER),
+                                  "b", new PerformanceHistory.Sample(10, Direction.LOWER_IS_BETTER)), WINDOW);
+    }
+    for (int i = 0; i < WINDOW; i++) {
+      Assert.assertEquals(1, history.update(
+        ImmutableMap.of("a", new PerformanceHistory.Sample(100, Direction.LOWER_IS_BETTER),
+                        "b", new PerformanceHistory.Sample(14, Direction.LOWER_IS_BETTER)),
+        TOLERANCE, MIN_VALUES, WINDOW).size());
+    }
+    Assert.assertEquals(1, history.findRegressions(sample(100, Direction.LOWER_IS_BETTER, "a"), TOLERANCE,
+                                                   MIN_VALUES).size());
+    Assert.assertTrue(history.findRegressions(sample(20, Direction.LOWER_IS_BETTER, "b"), TOLERANCE,
+                                              MIN_VALUES).isEmpty());
+  }
+
+  private static PerformanceHistory createHistory(Direction direction, double... values) {
+    PerformanceHistory history = new PerformanceHistory();
+    for (double value : values) {
+      history.add(sample(value, direction), WINDOW);
+    }
+    return history;
+  }
+
+  private static Map<String, String> findRegressions(PerformanceHistory history, double value, Direction direction) {
+    return history.findRegressions(sample(value, direction), TOLERANCE, MIN_VALUES);
+  }
+
+  private static Map<String, PerformanceHistory.Sample> sample(double value, Direction direction) {
+    return sample(value, direction, "sample");
+  }
+
+  private static Map<String, PerformanceHistory.Sample> sample(double value, Direction direction, String name) {
+    return Collections.singletonMap(name, new PerformanceHistory.Sample(value, direction));
+  }
+}
@@ -21,6 +21,7 @@ import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
 import io.cdap.cdap.test.LongRunningTestBase;
 import io.cdap.cdap.test.runner.AutoSuiteRunner;
+import io.cdap.cdap.test.shared.TestStateJournal;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.runner.RunWith;
@@ -31,11 +32,20 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
- * Suite to run all long running tests for CDAP
+ * Suite to run all long running tests for CDAP.
+ *
+ * The state of each test is appended to a {@link TestStateJournal} after each iteration, which is given by the
+ * {@code state.journal} system property, the output state file with a {@code .journal} suffix by default. Once the
+ * suite completed and the output state file is written, the journal is removed. If the journal still exists when the
+ * suite starts, the JVM of the previous run died before, and the states recovered from the journal replace the input
+ * states of the same tests.
  */
 @RunWith(AutoSuiteRunner.class)
 @AutoSuiteRunner.Matches(packages = "io.cdap.cdap.longrunning")
@@ -43,8 +53,12 @@ public class LongRunningTestRunner {
   private static final Logger LOG = LoggerFactory.getLogger(LongRunningTestRunner.class);
   private static final String INPUT_STATE_PROP = "input.state";
   private static final String OUTPUT_STATE_PROP = "output.state";
+  private static final String STATE_JOURNAL_PROP = "state.journal";
   private static final Gson GSON = new Gson();
 
+  private static Path journalFile;
+  private static TestStateJournal journal;
+
   @BeforeClass
   public static void deserialize() throws Exception {
     String inputStateFile = System.getProperty(INPUT_STATE_PROP);
@@ -65,11 +79,21 @@ public class LongRunningTestRunner {
       inMemoryMap = new HashMap<>();
     }
     LOG.info("Deserialized test input state = {}", inMemoryMap);
-    LongRunningTestBase.initializeInMemoryMap(inMemoryMap);
+
+    journalFile = Paths.get(System.getProperty(STATE_JOURNAL_PROP, outputStateFile + ".journal"));
+    journal = TestStateJournal.open(journalFile);
+    Map<String, String> recoveredMap = journal.getStates();
+    if (!recoveredMap.isEmpty()) {
+      LOG.warn("Recovered the state of tests {} from journal {} of a previous run that did not complete",
+               recoveredMap.keySet(), journalFile);
+      inMemoryMap.putAll(recoveredMap);
+    }
+    LongRunningTestBase.initializeInMemoryMap(inMemoryMap, journal);
   }
 
   @AfterClass
   public static void serialize() throws Exception {
+    // sorted, so that the output does not depend on the order in which concurrent tests finished
     Map<String, String> inMemoryMap = LongRunningTestBase.getInMemoryMap();
     LOG.info("Test output state to serialize = {}", inMemoryMap);
     String outputStateFile = System.getProperty(OUTPUT_STATE_PROP);
@@ -77,5 +101,8 @@ public class LongRunningTestRunner {
       LOG.info("Serializing test state to output file = {}", outputStateFile);
       GSON.toJson(inMemoryMap, writer);
     }
+    // the output state file has all states now
+    journal.close();
+    Files.delete(journalFile);
   }
 }